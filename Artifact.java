@@ -0,0 +1,47 @@
+import java.util.EnumSet;
+
+enum Artifact {
+    // the files an assembly can write, name is the one used by --outputs
+    LITERAL_TABLE("literals", "literal_table.txt", AssemblyPhase.WRITE_LITERAL_TABLE),
+    SYMBOL_TABLE("symbols", "symbol_table.txt", AssemblyPhase.WRITE_SYMBOL_TABLE),
+    POOL_TABLE("pools", "pool_table.txt", AssemblyPhase.WRITE_POOL_TABLE),
+    INTERMEDIATE_CODE("ic", "intermediate_code.txt", AssemblyPhase.WRITE_INTERMEDIATE_CODE),
+    BINARY_INTERMEDIATE_CODE("binary-ic", "intermediate_code.ic", AssemblyPhase.WRITE_BINARY_INTERMEDIATE_CODE);
+
+    public final String name;
+    public final String fileName;
+    public final AssemblyPhase phase;
+
+    Artifact(String name, String fileName, AssemblyPhase phase) {
+        this.name = name;
+        this.fileName = fileName;
+        this.phase = phase;
+    }
+
+    // the four text files, a new set on every call so that callers can add to it
+    public static EnumSet<Artifact> defaults() {
+        return EnumSet.of(LITERAL_TABLE, SYMBOL_TABLE, POOL_TABLE, INTERMEDIATE_CODE);
+    }
+
+    // a comma separated list of names, e.g. symbols,ic
+    public static EnumSet<Artifact> parse(String names) {
+        EnumSet<Artifact> artifacts = EnumSet.noneOf(Artifact.class);
+        for (String name : names.split(",")) {
+            Artifact artifact = forName(name.trim());
+            if (artifact == null) {
+                throw new IllegalArgumentException("Unknown output: " + name + " (expected literals, symbols, pools, ic or binary-ic)");
+            }
+            artifacts.add(artifact);
+        }
+        return artifacts;
+    }
+
+    public static Artifact forName(String name) {
+        for (Artifact artifact : values()) {
+            if (artifact.name.equals(name)) {
+                return artifact;
+            }
+        }
+        return null;
+    }
+}
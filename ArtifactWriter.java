@@ -0,0 +1,117 @@
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+
+class ArtifactWriter {
+    // renders and writes the selected artifacts of one assembly in the background, each one as soon as what it shows is
+    // final: the tables when generateTables is done (generateIntermediateCode only reads them), so they are written while
+    // the intermediate code is generated, and the intermediate code after that. Artifacts that are not selected are
+    // never rendered. await() returns when the slowest write is done
+    // the shared executor has at least four threads, so the artifacts of one assembly never wait for each other
+    public static final ExecutorService shared = Executors.newFixedThreadPool(Math.max(4, Runtime.getRuntime().availableProcessors()), runnable -> {
+        Thread thread = new Thread(runnable, "artifact-writer");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final File outputDirectory;
+    private final EnumSet<Artifact> artifacts;
+    private final Executor executor;
+    private final ArrayList<Future<Void>> writes = new ArrayList<>();
+
+    public ArtifactWriter(String outputDirectory, EnumSet<Artifact> artifacts) {
+        this(outputDirectory, artifacts, shared);
+    }
+
+    // with Runnable::run as the executor, every artifact is written on the calling thread when it is handed over
+    public ArtifactWriter(String outputDirectory, EnumSet<Artifact> artifacts, Executor executor) {
+        this.outputDirectory = new File(outputDirectory);
+        this.artifacts = EnumSet.copyOf(artifacts); // the caller's set may change after this
+        this.executor = executor;
+        this.outputDirectory.mkdirs(); // once here, not from several writers at the same time
+    }
+
+    public void writeTables(SymbolTable symbolTable, LiteralTable literalTable, PoolTable poolTable, AssemblyMetrics metrics) {
+        write(Artifact.LITERAL_TABLE, metrics, literalTable::write);
+        write(Artifact.SYMBOL_TABLE, metrics, symbolTable::write);
+        write(Artifact.POOL_TABLE, metrics, poolTable::write);
+    }
+
+    public void writeIntermediateCode(IntermediateCode intermediateCode, AssemblyMetrics metrics) {
+        write(Artifact.INTERMEDIATE_CODE, metrics, intermediateCode::write);
+        if (artifacts.contains(Artifact.BINARY_INTERMEDIATE_CODE)) {
+            submit(Artifact.BINARY_INTERMEDIATE_CODE, metrics, file -> {
+                try (DataOutputStream output = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file)))) {
+                    intermediateCode.writeBinary(output);
+                }
+            });
+        }
+    }
+
+    // a result that is already complete, e.g. read back from the AssemblyCache
+    public void writeAll(AssemblyResult result) {
+        writeTables(result.symbolTable, result.literalTable, result.poolTable, result.metrics);
+        writeIntermediateCode(result.intermediateCode, result.metrics);
+    }
+
+    // wait for every write handed over so far, the first failure is thrown once all are done
+    public void await() throws IOException {
+        IOException failure = null;
+        for (Future<Void> write : writes) {
+            try {
+                write.get();
+            } catch (ExecutionException e) {
+                if (failure == null) {
+                    failure = e.getCause() instanceof IOException ? (IOException) e.getCause() : new IOException(e.getCause());
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException("Interrupted while writing " + outputDirectory, e);
+            }
+        }
+        writes.clear();
+        if (failure != null) {
+            throw failure;
+        }
+    }
+
+    // the rows are streamed into the file as they are rendered
+    private void write(Artifact artifact, AssemblyMetrics metrics, ChannelTextWriter.Render content) {
+        if (artifacts.contains(artifact)) {
+            submit(artifact, metrics, file -> {
+                try (ChannelTextWriter output = ChannelTextWriter.open(file)) {
+                    content.render(output);
+                }
+            });
+        }
+    }
+
+    private void submit(Artifact artifact, AssemblyMetrics metrics, FileWrite fileWrite) {
+        File file = new File(outputDirectory, artifact.fileName);
+        FutureTask<Void> write = new FutureTask<>(() -> {
+            metrics.begin(artifact.phase);
+            try {
+                fileWrite.write(file);
+            } finally {
+                metrics.end(artifact.phase);
+            }
+            return null;
+        });
+        writes.add(write);
+        executor.execute(write);
+    }
+
+    private interface FileWrite {
+        void write(File file) throws IOException;
+    }
+}
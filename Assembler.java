@@ -1,124 +1,191 @@
-import java.io.File;
-import java.io.FileWriter;
 import java.io.IOException;
+import java.util.ArrayList;
 
 class Assembler {
-    public static int locationCounter = 0;
-    private static SymbolTable symbolTable = new SymbolTable();
-    private static LiteralTable literalTable = new LiteralTable();
-    private static PoolTable poolTable = new PoolTable();
+    // all state belongs to one assembly, so several files can be assembled at the same time by separate instances
+    private String inputAsmFileName;
+    private int locationCounter = 0;
+    private SymbolTable symbolTable = new SymbolTable();
+    private LiteralTable literalTable = new LiteralTable();
+    private PoolTable poolTable = new PoolTable();
+    private ExpressionTable expressions = new ExpressionTable(symbolTable); // operands of ORIGIN, EQU and DC
+    private int[] lineAddresses; // location counter at the end of each source line, the address of the statement on that line
+    private boolean isAssembled = false;
+    private int originJumps = 0;
+    private ArrayList<DeferredConstant> deferredConstants = new ArrayList<>(); // one-pass DC operands that use symbols
+    private ArrayList<String> unlinkableData = new ArrayList<>(); // see AssemblyResult.unlinkableData
+
+    public Assembler(String inputAsmFileName) {
+        this.inputAsmFileName = inputAsmFileName;
+    }
 
     public static void performPass1(String inputAsmFileName) {
-        generateTables(inputAsmFileName);
-        generateIntermediateCode(inputAsmFileName);
+        performPass1(inputAsmFileName, "output");
     }
 
-    // generate symbol, literal, and pool tables
-    private static void generateTables(String inputAsmFileName) {
+    // assemble the file and write the tables and the intermediate code into outputDirectory
+    // with -Dassembler.metrics=true, metrics.json (see AssemblyMetrics) is written next to them
+    public static void performPass1(String inputAsmFileName, String outputDirectory) {
         try {
-            CustomFileReader reader = new CustomFileReader(inputAsmFileName);
-            String word;
-            boolean isStartInstructionSeen = false;
-
-            while ((word = reader.readWord()) != null) {
-                word = removeCommaFromEnd(word);
-        
-                MachineOpcodeTableEntry instructionDetails = MachineOpcodeTable.table.get(word.toLowerCase());
-
-                // if the word is a symbol or a literal
-                if (instructionDetails == null) {
-                    // if the word is a symbol
-                    if (isSymbol(word)) {
-                        int symbolId = symbolTable.table.size() + 1;
-                        // if symbol is already present, get its id
-                        if (symbolTable.table.containsKey(word)) {
-                            symbolId = symbolTable.table.get(word).id;
-                        }
-                        // if the word is a label (symbol appearing first in line)
-                        if (reader.isFirstWordInLine) {
-                            locationCounter++;
-                            symbolTable.table.put(word, new SymbolTableEntry(symbolId, locationCounter));
-                        } else if (!symbolTable.table.containsKey(word)) {
-                            symbolTable.table.put(word, new SymbolTableEntry(symbolId, locationCounter));
-                        }
-                    }
-                    // if the word is a literal
-                    else if (isLiteral(word)) {
-                        // if there are no pools and the literal is not present in the literal table
-                        if (poolTable.table.size() == 0) {
-                            if (!literalTable.contains(word)) {
-                                literalTable.table.add(new LiteralTableEntry(literalTable.table.size() + 1, word));
-                            }
-                        } else if (!literalTable.containsInCurrentUndonePool(word, poolTable)) {
-                        // if there are pools and the literal is not present in the current undone pool
-                            literalTable.table.add(new LiteralTableEntry(literalTable.table.size() + 1, word));
-                        }
+            ArtifactWriter writer = new ArtifactWriter(outputDirectory, Artifact.defaults());
+            AssemblyResult result = new Assembler(inputAsmFileName).assemble(writer);
+            writer.await();
+            if (Boolean.getBoolean("assembler.metrics")) {
+                result.writeMetrics(outputDirectory);
+            }
+        } catch (IOException | RuntimeException e) {
+            System.err.println("Failed to assemble " + inputAsmFileName + ": " + e);
+        }
+    }
+
+    // perform pass 1, an instance can only be used once
+    public AssemblyResult assemble() throws IOException {
+        return assemble(null);
+    }
+
+    // perform pass 1 and hand each artifact to the writer as soon as it is final (the writer may be null)
+    // the tables are final after generateTables, so they are rendered while the intermediate code is generated
+    public AssemblyResult assemble(ArtifactWriter writer) throws IOException {
+        if (isAssembled) {
+            throw new IllegalStateException("Already assembled: " + inputAsmFileName);
+        }
+        isAssembled = true;
+
+        AssemblyMetrics metrics = new AssemblyMetrics(inputAsmFileName);
+        // the source is read and split only once, both walks below iterate over the same tokens
+        TokenStream tokens = tokenize(metrics);
+        metrics.begin(AssemblyPhase.GENERATE_TABLES);
+        generateTables(tokens);
+        metrics.end(AssemblyPhase.GENERATE_TABLES);
+        if (writer != null) {
+            writer.writeTables(symbolTable, literalTable, poolTable, metrics);
+        }
+        metrics.begin(AssemblyPhase.GENERATE_INTERMEDIATE_CODE);
+        IntermediateCode intermediateCode = generateIntermediateCode(tokens);
+        metrics.end(AssemblyPhase.GENERATE_INTERMEDIATE_CODE);
+        if (writer != null) {
+            writer.writeIntermediateCode(intermediateCode, metrics);
+        }
+
+        count(metrics, tokens);
+        AssemblyResult result = new AssemblyResult(symbolTable, literalTable, poolTable, intermediateCode, metrics);
+        result.includedFiles = tokens.includedFiles;
+        result.unlinkableData = unlinkableData;
+        return result;
+    }
+
+    // pass 1 and the target code in a single walk over the tokens, an instance can only be used once
+    // the tables and the intermediate code are the same as from assemble(), and result.machineCode holds the words
+    // Pass2 would generate from them
+    public AssemblyResult assembleOnePass() throws IOException {
+        return assembleOnePass(null);
+    }
+
+    // as above, handing the artifacts to the writer (which may be null) once the walk is done
+    public AssemblyResult assembleOnePass(ArtifactWriter writer) throws IOException {
+        if (isAssembled) {
+            throw new IllegalStateException("Already assembled: " + inputAsmFileName);
+        }
+        isAssembled = true;
+
+        AssemblyMetrics metrics = new AssemblyMetrics(inputAsmFileName);
+        TokenStream tokens = tokenize(metrics);
+        int lines = tokens.size == 0 ? 0 : tokens.lineNumbers[tokens.size - 1];
+        MachineCode machineCode = new MachineCode(lines); // about one word per line
+        metrics.begin(AssemblyPhase.ONE_PASS);
+        IntermediateCode intermediateCode = generateInOnePass(tokens, machineCode);
+        metrics.end(AssemblyPhase.ONE_PASS);
+
+        count(metrics, tokens);
+        AssemblyResult result = new AssemblyResult(symbolTable, literalTable, poolTable, intermediateCode, metrics, machineCode);
+        result.includedFiles = tokens.includedFiles;
+        result.unlinkableData = unlinkableData;
+        if (writer != null) {
+            writer.writeAll(result);
+        }
+        return result;
+    }
+
+    private TokenStream tokenize(AssemblyMetrics metrics) throws IOException {
+        metrics.begin(AssemblyPhase.LEX);
+        TokenStream tokens = Lexer.tokenize(inputAsmFileName);
+        metrics.end(AssemblyPhase.LEX);
+        return tokens;
+    }
+
+    private void count(AssemblyMetrics metrics, TokenStream tokens) {
+        metrics.lines = tokens.size == 0 ? 0 : tokens.lineNumbers[tokens.size - 1];
+        metrics.tokens = tokens.size;
+        metrics.originJumps = originJumps;
+        metrics.countTables(symbolTable, literalTable, poolTable);
+        metrics.commitCounters();
+    }
+
+    // generate symbol, literal, and pool tables (package-private so that the benchmarks can time each phase)
+    void generateTables(TokenStream tokens) {
+        TokenReader reader = new TokenReader(tokens);
+        String word;
+        boolean isStartInstructionSeen = false;
+        lineAddresses = new int[tokens.size == 0 ? 1 : tokens.lineNumbers[tokens.size - 1] + 1];
+
+        while ((word = reader.readWord()) != null) {
+            MachineOpcodeTableEntry instructionDetails = reader.instruction;
+
+            // if the word is a symbol or a literal
+            if (instructionDetails == null) {
+                // if the word is a symbol
+                if (reader.kind == TokenStream.SYMBOL) {
+                    // if the word is a label (symbol appearing first in line)
+                    if (reader.isFirstWordInLine) {
+                        locationCounter++;
+                        symbolTable.define(word, locationCounter);
+                    } else {
+                        symbolTable.addIfAbsent(word, locationCounter);
                     }
-                } else {
-                    // if the word is a machine instruction
-                    word = word.toLowerCase();
-                    if (instructionDetails.instructionClass.equals("AD")) {
-                        if (word.equals("start")) {
-                            word = reader.readWord();
-                            locationCounter = Integer.parseInt(word);
-                            isStartInstructionSeen = true;
-                        } else if (word.equals("origin")) {
-                            word = reader.readWord();
-                            // if the address is specified as a symbol
-                            if (isSymbol(word)) {
-                                // if an offset is specified
-                                if (word.contains("+")) {
-                                    String[] splitWords = word.split("\\+");
-                                    locationCounter = symbolTable.table.get(splitWords[0]).address + Integer.parseInt(splitWords[1]);
-                                } else {
-                                    locationCounter = symbolTable.table.get(word).address;
-                                }
-                                locationCounter--;
-                            } else {
-                                // if the address is specified as a constant
+                }
+                // if the word is a literal
+                else if (reader.kind == TokenStream.LITERAL) {
+                    // added only if the literal is not present in the current undone pool
+                    literalTable.addToCurrentUndonePool(word);
+                }
+            } else {
+                // if the word is a machine instruction
+                switch (instructionDetails.instructionClass) {
+                    case AD:
+                        switch (instructionDetails.directive) {
+                            case START:
+                                word = reader.readWord();
                                 locationCounter = Integer.parseInt(word);
-                            }
-                        } else if (word.equals("ltorg") || word.equals("end")) {
-                            // assign addresses to literals in the current undone pool
-                            // if the pool table is not empty (there is at least one pool)
-                            if (poolTable.table.size() > 0) {
-                                for (int i = poolTable.table.get(poolTable.table.size()).poolLength; i < literalTable.table.size(); i++) {
-                                    locationCounter++;
-                                    literalTable.table.get(i).address = locationCounter;
-                                }
-                                // make a new entry in the pool table
-                                poolTable.table.put(poolTable.table.size() + 1, new PoolTableEntry(literalTable.table.size(), literalTable.table.size() - poolTable.table.get(poolTable.table.size()).poolLength));
-                            } else {
-                                // if the pool table is empty
-                                // assign addresses to all literals in the literal table
-                                for (int i = 0; i < literalTable.table.size(); i++) {
-                                    locationCounter++;
-                                    LiteralTableEntry oldEntry = literalTable.table.get(i);
-                                    literalTable.table.set(i, new LiteralTableEntry(oldEntry.id, oldEntry.literal, locationCounter));
+                                isStartInstructionSeen = true;
+                                break;
+                            case ORIGIN:
+                                originJumps++;
+                                word = reader.readWord();
+                                locationCounter = originAddress(word, reader.lineNumber);
+                                break;
+                            case LTORG:
+                            case END:
+                                // assign addresses to literals in the current undone pool, and make a new entry in the pool table
+                                locationCounter = literalTable.closeCurrentPool(locationCounter, poolTable);
+
+                                if (instructionDetails.directive == Directive.END) {
+                                    return;
                                 }
-                                // make a new entry in the pool table
-                                poolTable.table.put(1, new PoolTableEntry(1, literalTable.table.size()));
-                            }
 
-                            if (word.equals("end")) {
+                                // skip literals after ltorg, as they are already processed
+                                reader.skipLiteralsAfterLtorg();
+                                break;
+                            case EQU:
+                                locationCounter--; // decrement the location counter as the the word before equ is a symbol already present in the symbol table
+                                String previousWord = reader.previousWord;
+                                word = reader.readWord();
+                                equate(symbolTable.lookup(previousWord), expressions.get(word, reader.lineNumber));
+                                break;
+                            default:
                                 break;
-                            }
-
-                            // skip literals after ltorg, as they are already processed
-                            ignoreLiteralsAfterLtorg(reader);
-                        } else if (word.equals("equ")) {
-                            locationCounter--; // decrement the location counter as the the word before equ is a symbol already present in the symbol table
-                            String previousWord = reader.previousWord;
-                            word = reader.readWord();
-                            symbolTable.table.get(previousWord).address = symbolTable.table.get(word).address;
-                        } else if (word.equals("ds")) {
-                            locationCounter++;
-                            String previousWord = reader.previousWord;
-                            // allocate memory to the symbol
-                            symbolTable.table.get(previousWord).address = locationCounter;
-                            word = reader.readWord();
                         }
-                    } else {
+                        break;
+                    default:
                         // if the instruction class is other than AD
                         if (isStartInstructionSeen) { // to correctly start at the location specified by the start instruction
                             locationCounter--;
@@ -126,140 +193,313 @@ class Assembler {
                         }
 
                         if (reader.isFirstWordInLine) {
-                            if (instructionDetails.instructionClass.equals("IS")) {
-                                locationCounter++;
-                            } else if (instructionDetails.instructionClass.equals("DL")) {
-                                locationCounter++;
-                            }   
+                            switch (instructionDetails.instructionClass) {
+                                case IS:
+                                case DL:
+                                    locationCounter++;
+                                    break;
+                                default:
+                                    break;
+                            }
                         }
-                    }
+
+                        // the symbols of a DC operand take their ids here, as those of other operands do
+                        // its value is only taken by generateIntermediateCode, once every symbol is defined
+                        if (instructionDetails.directive == Directive.DC && reader.isOperandNext()) {
+                            word = reader.readWord();
+                            expressions.getAdding(word, reader.lineNumber, locationCounter);
+                        }
+                        break;
                 }
             }
-            reader.close();
-
-            writeToFile("output/literal_table.txt", literalTable.toString());
-            writeToFile("output/symbol_table.txt", symbolTable.toString());
-            writeToFile("output/pool_table.txt", poolTable.toString());
-        } catch (IOException e) {
-            e.printStackTrace();
+            lineAddresses[reader.lineNumber] = locationCounter;
         }
     }
 
     // generate intermediate code
-    private static void generateIntermediateCode(String inputAsmFileName) {
-        try {
-            CustomFileReader reader = new CustomFileReader(inputAsmFileName);
-            String word;
-            StringBuffer intermediateCode = new StringBuffer();
-            int currentPoolNumber = 1;  // starts from 1 (not zero based)
-
-            while ((word = reader.readWord()) != null) {
-                word = removeCommaFromEnd(word);
-
-                if (reader.isFirstWordInLine) intermediateCode.append("\n");
-                
-                MachineOpcodeTableEntry instructionDetails = MachineOpcodeTable.table.get(word.toLowerCase());
-
-                // if the word is not a machine instruction
-                if (instructionDetails == null) {
-                    // if the word is a symbol or a label, and is not the first word in line
-                    if (isSymbol(word) && !reader.isFirstWordInLine) {
-                        int symbolId = symbolTable.table.get(word).id;
-                        intermediateCode.append("(S, " + symbolId + ") ");
-                    } else if (isLiteral(word)) {
-                        int literalId = literalTable.getLiteralId(word, currentPoolNumber, poolTable);
-                        intermediateCode.append("(L, " + literalId + ") ");
-                    } else if (isConstant(word)) {
-                        intermediateCode.append("(C, " + word + ") ");
-                    }
-                } else {
-                    // if the word is a machine instruction
-                    word = word.toLowerCase();
+    IntermediateCode generateIntermediateCode(TokenStream tokens) {
+        TokenReader reader = new TokenReader(tokens);
+        String word;
+        IntermediateCode intermediateCode = new IntermediateCode();
+        int currentPoolNumber = 1;  // starts from 1 (not zero based)
 
-                    if (instructionDetails.instructionClass.equals("RG")) {
-                        intermediateCode.append("(" + instructionDetails.opcode + ") ");
-                    } else if (instructionDetails.instructionClass.equals("AD")) {
-                        intermediateCode.append("(" + instructionDetails.instructionClass + ", " + instructionDetails.opcode + ") ");
+        while ((word = reader.readWord()) != null) {
+            if (reader.isFirstWordInLine) intermediateCode.startStatement(reader.lineNumber, lineAddresses[reader.lineNumber]);
+            
+            MachineOpcodeTableEntry instructionDetails = reader.instruction;
 
-                        if (word.equals("ltorg")) {
+            // if the word is not a machine instruction
+            if (instructionDetails == null) {
+                // if the word is a symbol or a label, and is not the first word in line
+                if (reader.kind == TokenStream.SYMBOL && !reader.isFirstWordInLine) {
+                    int symbolId = symbolTable.lookup(word);
+                    intermediateCode.add(IntermediateCode.SYMBOL, symbolId);
+                } else if (reader.kind == TokenStream.LITERAL) {
+                    int literalId = literalTable.getLiteralId(word, currentPoolNumber);
+                    intermediateCode.add(IntermediateCode.LITERAL, literalId);
+                } else if (reader.kind == TokenStream.CONSTANT) {
+                    intermediateCode.add(IntermediateCode.CONSTANT, Integer.parseInt(word));
+                }
+            } else {
+                // if the word is a machine instruction
+                if (instructionDetails.instructionClass == InstructionClass.RG) {
+                    intermediateCode.add(IntermediateCode.RG, instructionDetails.opcode);
+                    continue;
+                }
+                intermediateCode.add(IntermediateCode.kindOf(instructionDetails.instructionClass), instructionDetails.opcode);
+
+                if (instructionDetails.directive == Directive.DC && reader.isOperandNext()) {
+                    word = reader.readWord();
+                    Expression expression = expressions.getAdding(word, reader.lineNumber, 0);
+                    if (expression.isSymbol()) {
+                        intermediateCode.add(IntermediateCode.SYMBOL, expression.symbolId());
+                    } else {
+                        intermediateCode.add(IntermediateCode.CONSTANT, expressions.value(expression));
+                        checkLinkable(expression, reader.lineNumber);
+                    }
+                }
+                if (instructionDetails.instructionClass == InstructionClass.AD) {
+                    switch (instructionDetails.directive) {
+                        case LTORG:
                             currentPoolNumber++; // increment the current pool number so that literals can be searched in the right pool
-                            
+
                             // ignore literals after ltorg
-                            ignoreLiteralsAfterLtorg(reader);
-                        } else if (word.equals("origin")) {
+                            reader.skipLiteralsAfterLtorg();
+                            break;
+                        case ORIGIN:
                             word = reader.readWord();
-                        } else if (word.equals("end")) {
                             break;
-                        }
+                        case EQU:
+                            if (reader.isOperandNext()) {
+                                int symbolId = symbolTable.lookup(reader.previousWord);
+                                word = reader.readWord();
+                                addEquOperand(intermediateCode, expressions.get(word, reader.lineNumber), symbolId);
+                            }
+                            break;
+                        default:
+                            break;
+                    }
+                    if (instructionDetails.directive == Directive.END) {
+                        break;
+                    }
+                }
+            }
+        }
+
+        return intermediateCode;
+    }
+
+    // generateTables and generateIntermediateCode merged into one walk, which also hands every finished statement to
+    // machineCode (package-private so that the benchmarks can time it)
+    // each word is read once, so the words that generateTables reads ahead (the operands of START and EQU) also go into
+    // the intermediate code here. Symbol and literal ids are known on first sight, only addresses can change later:
+    // those of the words are patched through machineCode's fixup chains, those of the statements are set at the end
+    IntermediateCode generateInOnePass(TokenStream tokens, MachineCode machineCode) {
+        TokenReader reader = new TokenReader(tokens);
+        String word;
+        boolean isStartInstructionSeen = false;
+        lineAddresses = new int[tokens.size == 0 ? 1 : tokens.lineNumbers[tokens.size - 1] + 1];
+        IntermediateCode intermediateCode = new IntermediateCode(Math.max(1, tokens.size), lineAddresses.length); // at most an item per token and a statement per line
+
+        while ((word = reader.readWord()) != null) {
+            if (reader.isFirstWordInLine) {
+                startStatement(intermediateCode, machineCode, reader.lineNumber);
+            }
+            MachineOpcodeTableEntry instructionDetails = reader.instruction;
+
+            // if the word is a symbol, a literal or a constant
+            if (instructionDetails == null) {
+                if (reader.kind == TokenStream.SYMBOL) {
+                    // if the word is a label (symbol appearing first in line)
+                    if (reader.isFirstWordInLine) {
+                        locationCounter++;
+                        machineCode.setSymbolAddress(symbolTable.define(word, locationCounter), locationCounter);
                     } else {
-                        intermediateCode.append("(" + instructionDetails.instructionClass + ", " + instructionDetails.opcode + ") ");
+                        intermediateCode.add(IntermediateCode.SYMBOL, symbolTable.addIfAbsent(word, locationCounter));
                     }
+                } else if (reader.kind == TokenStream.LITERAL) {
+                    intermediateCode.add(IntermediateCode.LITERAL, literalTable.addToCurrentUndonePool(word));
+                } else if (reader.kind == TokenStream.CONSTANT) {
+                    intermediateCode.add(IntermediateCode.CONSTANT, Integer.parseInt(word));
+                }
+            } else {
+                // if the word is a machine instruction
+                intermediateCode.add(IntermediateCode.kindOf(instructionDetails.instructionClass), instructionDetails.opcode);
+                switch (instructionDetails.instructionClass) {
+                    case AD:
+                        switch (instructionDetails.directive) {
+                            case START:
+                                word = reader.readWord();
+                                addOperand(reader, intermediateCode, machineCode);
+                                locationCounter = Integer.parseInt(word);
+                                isStartInstructionSeen = true;
+                                break;
+                            case ORIGIN:
+                                originJumps++;
+                                word = reader.readWord(); // not in the intermediate code
+                                locationCounter = originAddress(word, reader.lineNumber);
+                                break;
+                            case LTORG:
+                            case END:
+                                locationCounter = literalTable.closeCurrentPool(locationCounter, poolTable);
+                                PoolTableEntry pool = poolTable.table.get(poolTable.table.size());
+                                for (int id = pool.literalId; id < pool.literalId + pool.poolLength; id++) {
+                                    machineCode.setLiteralAddress(id, literalTable.table.get(id - 1).address);
+                                }
+                                if (instructionDetails.directive == Directive.LTORG) {
+                                    reader.skipLiteralsAfterLtorg();
+                                }
+                                break;
+                            case EQU:
+                                locationCounter--;
+                                String previousWord = reader.previousWord;
+                                word = reader.readWord();
+                                Expression expression = expressions.get(word, reader.lineNumber);
+                                if (reader.isFirstWordInLine) {
+                                    startStatement(intermediateCode, machineCode, reader.lineNumber);
+                                }
+                                int symbolId = symbolTable.lookup(previousWord);
+                                equate(symbolId, expression);
+                                addEquOperand(intermediateCode, expression, symbolId);
+                                machineCode.setSymbolAddress(symbolId, symbolTable.getAddress(symbolId));
+                                break;
+                            default:
+                                break;
+                        }
+                        break;
+                    default:
+                        if (isStartInstructionSeen) {
+                            locationCounter--;
+                            isStartInstructionSeen = false;
+                        }
+                        if (reader.isFirstWordInLine
+                                && (instructionDetails.instructionClass == InstructionClass.IS || instructionDetails.instructionClass == InstructionClass.DL)) {
+                            locationCounter++;
+                        }
+                        if (instructionDetails.directive == Directive.DC && reader.isOperandNext()) {
+                            word = reader.readWord();
+                            Expression expression = expressions.getAdding(word, reader.lineNumber, locationCounter);
+                            if (expression.isSymbol()) {
+                                intermediateCode.add(IntermediateCode.SYMBOL, expression.symbolId()); // like an instruction's operand
+                            } else if (expression.usesSymbols()) {
+                                // a symbol may still be defined further down, the value is filled in after the walk
+                                deferredConstants.add(new DeferredConstant(intermediateCode.itemCount, intermediateCode.statementCount - 1, expression));
+                                intermediateCode.add(IntermediateCode.CONSTANT, 0);
+                            } else {
+                                intermediateCode.add(IntermediateCode.CONSTANT, expressions.value(expression));
+                            }
+                        }
+                        break;
+                }
+                if (instructionDetails.directive == Directive.END) {
+                    break; // like generateTables, without recording the location counter for the line of END
                 }
             }
+            lineAddresses[reader.lineNumber] = locationCounter;
+        }
 
-            intermediateCode.deleteCharAt(0); // delete the newline added at the beginning
-            writeToFile("output/intermediate_code.txt", intermediateCode.toString());
-        } catch (IOException e) {
-            e.printStackTrace();
+        if (intermediateCode.statementCount > 0) {
+            addStatement(intermediateCode, machineCode, intermediateCode.statementCount - 1);
+        }
+        for (DeferredConstant constant : deferredConstants) {
+            int value = expressions.value(constant.expression);
+            intermediateCode.values[constant.item] = value;
+            machineCode.setData(constant.word, value);
+            checkLinkable(constant.expression, intermediateCode.statementLines[constant.statement]);
         }
+        for (int statement = 0; statement < intermediateCode.statementCount; statement++) {
+            intermediateCode.statementAddresses[statement] = lineAddresses[intermediateCode.statementLines[statement]];
+        }
+        machineCode.resolveAddresses(intermediateCode);
+        return intermediateCode;
     }
 
-    private static void ignoreLiteralsAfterLtorg(CustomFileReader reader) throws IOException {
-        // ignore literals after ltorg
-        String tempWord = reader.readWord();
-
-        while (tempWord != null && tempWord.startsWith("='")) {
-            tempWord = reader.readWord();
+    // the statement before is complete, so its words can be generated
+    private void startStatement(IntermediateCode intermediateCode, MachineCode machineCode, int lineNumber) {
+        if (intermediateCode.statementCount > 0) {
+            addStatement(intermediateCode, machineCode, intermediateCode.statementCount - 1);
         }
-        
-        // the word after the last literal is read - put it back in the queue beginning, and set isFirstWordInLine to true so that isFirstWordInLine is retained
-        reader.addWordToQueueBeginning(tempWord);
-        reader.isFirstWordInLine = true;
-        reader.updateIsFirstWordInLine = false;
+        intermediateCode.startStatement(lineNumber, 0);
     }
 
-    private static void writeToFile(String filename, String content) {
-        try {
-            File file = new File(filename);
-            File parentDir = file.getParentFile();
-            if (parentDir != null && !parentDir.exists()) {
-                parentDir.mkdirs(); // create the directory if it does not exist
-            }
-            FileWriter writer = new FileWriter(file);
-            writer.write(content);
-            writer.close();
-        } catch (IOException e) {
-            e.printStackTrace();
+    private void addStatement(IntermediateCode intermediateCode, MachineCode machineCode, int statement) {
+        int size = deferredConstants.size();
+        if (size > 0 && deferredConstants.get(size - 1).statement == statement) {
+            deferredConstants.get(size - 1).word = machineCode.size(); // the DC's data word comes next
         }
+        machineCode.addStatement(intermediateCode, statement, symbolTable, literalTable, poolTable);
+    }
+
+    // ORIGIN: a constant is the address of the next statement, an expression with symbols the one before it (as a label
+    // moves the location counter on)
+    private int originAddress(String operand, int lineNumber) {
+        Expression expression = expressions.get(operand, lineNumber);
+        int value = expressions.value(expression);
+        return expression.usesSymbols() ? value - 1 : value;
     }
 
-    private static boolean isSymbol(String word) {
-        if (Character.isLetter(word.charAt(0)) || word.charAt(0) == '_') {
-            return true;
+    // EQU: a lone symbol passes on its address and whether it is defined, any other expression gives its value and
+    // relocation now (so N EQU 7 or (C-A)*3 is absolute and stays put when the linker moves the module)
+    private void equate(int symbolId, Expression expression) {
+        if (expression.isSymbol()) {
+            symbolTable.equate(symbolId, expression.symbolId());
+        } else {
+            symbolTable.setAddress(symbolId, expressions.value(expression), expressions.relocation(expression));
         }
-        return false;
     }
 
-    private static boolean isLiteral(String word) {
-        if (word.startsWith("='") && word.endsWith("'")) {
-            return true;
+    // the EQU operand in the intermediate code: a lone symbol by its id, any other expression by the value it gave the
+    // symbol (taken when the EQU was reached, even if a symbol in it moved later)
+    private void addEquOperand(IntermediateCode intermediateCode, Expression expression, int symbolId) {
+        if (expression.isSymbol()) {
+            intermediateCode.add(IntermediateCode.SYMBOL, expression.symbolId());
+        } else {
+            intermediateCode.add(IntermediateCode.CONSTANT, symbolTable.getAddress(symbolId));
         }
-        return false;
     }
 
-    private static boolean isConstant(String word) {
-        for (int i = 0; i < word.length(); i++) {
-            if (!Character.isDigit(word.charAt(i))) {
-                return false;
-            }
+    // a DC operand other than a lone symbol is a plain value in the target code, the linker can neither move nor resolve it
+    // so it has to be absolute (a constant or a difference of labels)
+    private void checkLinkable(Expression expression, int lineNumber) {
+        int relocation = expressions.relocation(expression);
+        if (relocation == SymbolTable.NOT_RELOCATABLE) {
+            unlinkableData.add("DC " + expression.text + " on line " + lineNumber + " uses an external symbol or a product of addresses");
+        } else if (relocation != 0) {
+            unlinkableData.add("DC " + expression.text + " on line " + lineNumber + " moves with the module");
         }
-        return true;
     }
 
-    private static String removeCommaFromEnd(String word) {
-        if (word.endsWith(",")) {
-            word = word.substring(0, word.length() - 1);
+    // an operand that generateTables reads ahead, as generateIntermediateCode adds it
+    private void addOperand(TokenReader reader, IntermediateCode intermediateCode, MachineCode machineCode) {
+        if (reader.word == null) {
+            return;
+        }
+        if (reader.isFirstWordInLine) {
+            startStatement(intermediateCode, machineCode, reader.lineNumber);
+        }
+        if (reader.instruction != null) {
+            return; // a mnemonic where an operand belongs, generateTables fails on it
+        }
+        if (reader.kind == TokenStream.SYMBOL && !reader.isFirstWordInLine) {
+            intermediateCode.add(IntermediateCode.SYMBOL, symbolTable.lookup(reader.word));
+        } else if (reader.kind == TokenStream.LITERAL) {
+            intermediateCode.add(IntermediateCode.LITERAL, literalTable.getLiteralId(reader.word, poolTable.table.size() + 1));
+        } else if (reader.kind == TokenStream.CONSTANT) {
+            intermediateCode.add(IntermediateCode.CONSTANT, Integer.parseInt(reader.word));
         }
-        return word;
+    }
+}
+
+// a DC operand whose value the one-pass walk only knows at the end: the intermediate code item and the data word to fill in
+class DeferredConstant {
+    int item;
+    int statement;
+    int word = -1; // set when the statement is handed to the machine code
+    Expression expression;
+
+    public DeferredConstant(int item, int statement, Expression expression) {
+        this.item = item;
+        this.statement = statement;
+        this.expression = expression;
     }
 }
@@ -0,0 +1,275 @@
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.StandardProtocolFamily;
+import java.net.UnixDomainSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.EnumSet;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+class AssemblerDaemon {
+    // a long-running assembler, so that a build which assembles many files pays for JVM startup and JIT warm-up only once
+    // requests come one per line, the fields separated by tabs (paths may contain spaces):
+    //   assemble [--object] [--outputs <list>] [--metrics] [--one-pass] <input .asm file> <output directory>   (as Main assemble)
+    //   stats
+    //   shutdown
+    // each request gets one reply line:
+    //   ok latencyMs=<receipt to reply> serviceMs=<assembly alone> queueDepth=<requests waiting at receipt> input=<file>
+    //   error <message>
+    //   stats requests=.. failures=.. queueDepth=.. maxQueueDepth=.. active=.. meanLatencyMs=.. maxLatencyMs=..
+    // assemble requests run on a fixed pool of workers, every one with a new Assembler, so no tables are shared between them
+    public static final int DEFAULT_WARMUP_LINES = 20_000;
+
+    private final ThreadPoolExecutor workers;
+    private volatile boolean isShutDown = false;
+    private ServerSocketChannel server;
+
+    private final AtomicLong requests = new AtomicLong();
+    private final AtomicLong failures = new AtomicLong();
+    private final AtomicLong totalLatencyNanos = new AtomicLong();
+    private final AtomicLong maxLatencyNanos = new AtomicLong();
+    private final AtomicLong maxQueueDepth = new AtomicLong();
+
+    public AssemblerDaemon(int threads) {
+        threads = Math.max(1, threads);
+        workers = new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS, new LinkedBlockingQueue<>());
+    }
+
+    // assemble a generated program a few times in both modes, so that the first requests already run compiled code
+    public void warmUp(int lines) throws IOException {
+        if (lines <= 0) {
+            return;
+        }
+        long start = System.nanoTime();
+        ProgramGenerator generator = new ProgramGenerator();
+        generator.lines = lines;
+        generator.originEvery = 20;
+        generator.equEvery = 30;
+        File program = File.createTempFile("assembler-warmup", ".asm");
+        try {
+            generator.write(program);
+            for (int i = 0; i < 10; i++) {
+                AssemblyResult result = new Assembler(program.getPath()).assemble();
+                Pass2.buildObjectImage(new Pass2(result));
+                result.intermediateCode.toString();
+                Pass2.buildObjectImage(new Assembler(program.getPath()).assembleOnePass().machineCode);
+            }
+        } finally {
+            program.delete();
+        }
+        System.err.printf("Warmed up in %.0f ms%n", (System.nanoTime() - start) / 1e6);
+    }
+
+    // serve the requests of every client that connects to the socket until a shutdown request
+    public void serve(Path socketFile) throws IOException {
+        Files.deleteIfExists(socketFile); // left behind by a daemon that did not shut down
+        server = ServerSocketChannel.open(StandardProtocolFamily.UNIX);
+        server.bind(UnixDomainSocketAddress.of(socketFile));
+        System.err.println("Listening on " + socketFile + " with " + workers.getMaximumPoolSize() + " workers");
+        try {
+            while (!isShutDown) {
+                SocketChannel connection = server.accept();
+                Thread reader = new Thread(() -> {
+                    try (SocketChannel channel = connection) {
+                        serve(Channels.newInputStream(channel), new SocketOutputStream(channel));
+                    } catch (IOException e) {
+                        System.err.println("Connection failed: " + e);
+                    }
+                }, "assembler-connection");
+                reader.setDaemon(true);
+                reader.start();
+            }
+        } catch (ClosedChannelException e) {
+            // closed by a shutdown request
+        } finally {
+            server.close();
+            Files.deleteIfExists(socketFile);
+            awaitWorkers();
+        }
+    }
+
+    // serve the requests of one stream until it ends (or until a shutdown request), the replies go to output
+    // when the daemon reads stdin, the end of the input also stops it once the queued requests are done
+    public void serve(InputStream input, OutputStream output) throws IOException {
+        BufferedReader reader = new BufferedReader(new InputStreamReader(input, StandardCharsets.UTF_8));
+        Writer writer = new OutputStreamWriter(output, StandardCharsets.UTF_8);
+        String line;
+        while (!isShutDown && (line = reader.readLine()) != null) {
+            if (line.isBlank()) {
+                continue;
+            }
+            handle(line.split("\t"), writer);
+        }
+        if (server == null) {
+            awaitWorkers();
+        }
+    }
+
+    private void handle(String[] request, Writer writer) throws IOException {
+        switch (request[0]) {
+            case "assemble":
+                long receivedAt = System.nanoTime();
+                int queueDepth = workers.getQueue().size();
+                maxQueueDepth.accumulateAndGet(queueDepth, Math::max);
+                try {
+                    workers.execute(() -> reply(writer, assemble(request, receivedAt, queueDepth)));
+                } catch (RejectedExecutionException e) {
+                    reply(writer, "error shutting down");
+                }
+                break;
+            case "stats":
+                reply(writer, stats());
+                break;
+            case "shutdown":
+                isShutDown = true;
+                reply(writer, "ok shutting down");
+                if (server != null) {
+                    server.close();
+                }
+                break;
+            default:
+                reply(writer, "error unknown request: " + request[0]);
+                break;
+        }
+    }
+
+    private String assemble(String[] request, long receivedAt, int queueDepth) {
+        CommandOptions options;
+        EnumSet<Artifact> artifacts;
+        try {
+            options = Main.assembleOptions(request, 1);
+            artifacts = options.artifacts();
+        } catch (UsageException e) {
+            return failed(receivedAt, e.getMessage() != null ? e.getMessage() : "usage: " + e.usage);
+        }
+        String inputFileName = options.operand(0);
+
+        long start = System.nanoTime();
+        try {
+            Main.assembleFile(inputFileName, options.operand(1), artifacts, options.has("--object"), options.has("--metrics"),
+                options.has("--one-pass"));
+        } catch (IOException | RuntimeException e) {
+            return failed(receivedAt, "failed to assemble " + inputFileName + ": " + e);
+        }
+        long end = System.nanoTime();
+        record(end - receivedAt);
+        String reply = String.format("ok latencyMs=%.3f serviceMs=%.3f queueDepth=%d input=%s",
+            (end - receivedAt) / 1e6, (end - start) / 1e6, queueDepth, inputFileName);
+        log(reply);
+        return reply;
+    }
+
+    private String failed(long receivedAt, String message) {
+        failures.incrementAndGet();
+        record(System.nanoTime() - receivedAt);
+        log("error " + message);
+        return "error " + message;
+    }
+
+    // with stdin the replies are already on stdout
+    private void log(String reply) {
+        if (server != null) {
+            System.err.println(reply);
+        }
+    }
+
+    private void record(long latencyNanos) {
+        requests.incrementAndGet();
+        totalLatencyNanos.addAndGet(latencyNanos);
+        maxLatencyNanos.accumulateAndGet(latencyNanos, Math::max);
+    }
+
+    private String stats() {
+        long count = requests.get();
+        return String.format("stats requests=%d failures=%d queueDepth=%d maxQueueDepth=%d active=%d meanLatencyMs=%.3f maxLatencyMs=%.3f",
+            count, failures.get(), workers.getQueue().size(), maxQueueDepth.get(), workers.getActiveCount(),
+            count == 0 ? 0 : totalLatencyNanos.get() / 1e6 / count, maxLatencyNanos.get() / 1e6);
+    }
+
+    // the replies of a connection come from several workers, one line at a time
+    private static void reply(Writer writer, String reply) {
+        synchronized (writer) {
+            try {
+                writer.write(reply);
+                writer.write('\n');
+                writer.flush();
+            } catch (IOException e) {
+                System.err.println("Could not reply \"" + reply + "\": " + e);
+            }
+        }
+    }
+
+    private void awaitWorkers() {
+        workers.shutdown();
+        try {
+            workers.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    // the client side: send one request to the daemon listening on socketFile and return its reply
+    // the daemon does not share the client's working directory, so the paths of an assemble request are made absolute
+    public static String send(Path socketFile, String[] request) throws IOException {
+        String[] fields = request.clone();
+        if (fields[0].equals("assemble")) {
+            // only the input file and the output directory are paths, option values (e.g. of --outputs) are sent as given
+            try {
+                CommandOptions options = Main.assembleOptions(fields, 1);
+                for (int operand = 0; operand < options.operandCount(); operand++) {
+                    fields[options.argIndex(operand)] = new File(options.operand(operand)).getAbsolutePath();
+                }
+            } catch (UsageException e) {
+                // sent unchanged, the daemon replies with what is wrong with it
+            }
+        }
+        try (SocketChannel channel = SocketChannel.open(UnixDomainSocketAddress.of(socketFile))) {
+            Writer writer = new OutputStreamWriter(Channels.newOutputStream(channel), StandardCharsets.UTF_8);
+            writer.write(String.join("\t", fields));
+            writer.write('\n');
+            writer.flush();
+            BufferedReader reader = new BufferedReader(new InputStreamReader(Channels.newInputStream(channel), StandardCharsets.UTF_8));
+            String reply = reader.readLine();
+            return reply != null ? reply : "error no reply from the daemon";
+        }
+    }
+
+    // writes straight to the channel: the stream of Channels.newOutputStream waits for the channel's blocking lock, which the
+    // reader of the same connection holds while it waits for the next request
+    private static class SocketOutputStream extends OutputStream {
+        private final SocketChannel channel;
+
+        SocketOutputStream(SocketChannel channel) {
+            this.channel = channel;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            write(new byte[] {(byte) b}, 0, 1);
+        }
+
+        @Override
+        public void write(byte[] bytes, int offset, int length) throws IOException {
+            ByteBuffer buffer = ByteBuffer.wrap(bytes, offset, length);
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+        }
+    }
+}
@@ -0,0 +1,205 @@
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+
+class AssemblyCache {
+    // on-disk cache of pass 1 results of whole files (segments are not reused), keyed by a hash of the source, of its
+    // directory and of the machine opcode table
+    // a hit reads the stored tables and intermediate code back instead of assembling the file again. The files the source
+    // INCLUDEs are found relative to its directory, so the directory decides which headers an INCLUDE names (the same
+    // source elsewhere may include other headers). Their contents are not in the key, an entry records their
+    // modification time and size instead and is a miss once one changed
+    private static final int MAGIC = 0x41430008; // "AC" and format version 8 (EQU of an external symbol)
+
+    private File cacheDirectory;
+    public final AtomicInteger hits = new AtomicInteger();
+    public final AtomicInteger misses = new AtomicInteger();
+
+    public AssemblyCache(File cacheDirectory) {
+        this.cacheDirectory = cacheDirectory;
+    }
+
+    public AssemblyResult assemble(String inputAsmFileName) throws IOException {
+        return assemble(inputAsmFileName, null);
+    }
+
+    // hands the artifacts to the writer (which may be null): all at once on a hit, as they are generated on a miss
+    public AssemblyResult assemble(String inputAsmFileName, ArtifactWriter writer) throws IOException {
+        File cacheFile = new File(cacheDirectory, key(inputAsmFileName) + ".asmc");
+        if (cacheFile.isFile()) {
+            try (DataInputStream input = new DataInputStream(new BufferedInputStream(new FileInputStream(cacheFile)))) {
+                AssemblyResult result = read(input, inputAsmFileName);
+                result.metrics.isCacheHit = true;
+                result.metrics.commitCounters();
+                hits.incrementAndGet();
+                if (writer != null) {
+                    writer.writeAll(result);
+                }
+                return result;
+            } catch (IOException e) {
+                // a damaged or stale entry is assembled again and overwritten
+            }
+        }
+
+        misses.incrementAndGet();
+        AssemblyResult result = new Assembler(inputAsmFileName).assemble(writer);
+        store(cacheFile, result);
+        return result;
+    }
+
+    private String key(String inputAsmFileName) throws IOException {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e); // every JVM has SHA-256
+        }
+        File inputFile = new File(inputAsmFileName);
+        digest.update(Files.readAllBytes(inputFile.toPath()));
+        // nested INCLUDEs are relative to their header, whose path follows from this directory
+        digest.update((inputFile.getCanonicalFile().getParent() + "\n").getBytes(StandardCharsets.UTF_8));
+        for (MachineOpcodeTableEntry entry : MachineOpcodeTable.entries) {
+            digest.update((entry.mnemonic + " " + entry.instructionClass + " " + entry.opcode + "\n").getBytes(StandardCharsets.UTF_8));
+        }
+
+        StringBuilder key = new StringBuilder(64);
+        for (byte b : digest.digest()) {
+            key.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+        }
+        return key.toString();
+    }
+
+    // written to a temporary file first, so that concurrent readers never see a half written entry
+    private void store(File cacheFile, AssemblyResult result) throws IOException {
+        cacheDirectory.mkdirs();
+        File temporaryFile = File.createTempFile("entry", ".tmp", cacheDirectory);
+        try {
+            try (DataOutputStream output = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temporaryFile)))) {
+                write(output, result);
+            }
+            Files.move(temporaryFile.toPath(), cacheFile.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            temporaryFile.delete();
+        }
+    }
+
+    /*
+        entry format (big-endian): int magic,
+        int includedFileCount, includedFileCount x (UTF canonical path, long lastModified, long size),
+        int symbolCount, symbolCount x (UTF name, int address, boolean isDefined, int relocation, int alias) in id order,
+        int literalCount, literalCount x (UTF literal, int address),
+        int poolCount, poolCount x (int literalId, int poolLength),
+        int unlinkableDataCount, unlinkableDataCount x UTF message,
+        the intermediate code in its binary form
+    */
+    private static void write(DataOutputStream output, AssemblyResult result) throws IOException {
+        output.writeInt(MAGIC);
+
+        output.writeInt(result.includedFiles.size());
+        for (IncludedFile includedFile : result.includedFiles) {
+            output.writeUTF(includedFile.path);
+            output.writeLong(includedFile.lastModified);
+            output.writeLong(includedFile.size);
+        }
+
+        output.writeInt(result.symbolTable.size());
+        for (int id = 1; id <= result.symbolTable.size(); id++) {
+            output.writeUTF(result.symbolTable.getName(id));
+            output.writeInt(result.symbolTable.getAddress(id));
+            output.writeBoolean(result.symbolTable.isDefined(id));
+            output.writeInt(result.symbolTable.getRelocation(id));
+            output.writeInt(result.symbolTable.getAlias(id));
+        }
+
+        output.writeInt(result.literalTable.table.size());
+        for (LiteralTableEntry entry : result.literalTable.table) {
+            output.writeUTF(entry.literal);
+            output.writeInt(entry.address);
+        }
+
+        output.writeInt(result.poolTable.table.size());
+        for (int id = 1; id <= result.poolTable.table.size(); id++) {
+            PoolTableEntry entry = result.poolTable.table.get(id);
+            output.writeInt(entry.literalId);
+            output.writeInt(entry.poolLength);
+        }
+
+        output.writeInt(result.unlinkableData.size());
+        for (String data : result.unlinkableData) {
+            output.writeUTF(data);
+        }
+
+        result.intermediateCode.writeBinary(output);
+    }
+
+    private static AssemblyResult read(DataInputStream input, String inputAsmFileName) throws IOException {
+        if (input.readInt() != MAGIC) {
+            throw new IOException("Not an assembly cache entry");
+        }
+
+        ArrayList<IncludedFile> includedFiles = new ArrayList<>();
+        int includedFileCount = input.readInt();
+        for (int i = 0; i < includedFileCount; i++) {
+            IncludedFile includedFile = new IncludedFile(input.readUTF(), input.readLong(), input.readLong());
+            if (!includedFile.isUnchanged()) {
+                throw new IOException("Included file changed: " + includedFile.path); // assembled again
+            }
+            includedFiles.add(includedFile);
+        }
+
+        SymbolTable symbolTable = new SymbolTable();
+        int symbolCount = input.readInt();
+        int[] aliases = new int[symbolCount + 1];
+        for (int i = 0; i < symbolCount; i++) {
+            String name = input.readUTF();
+            int address = input.readInt();
+            int id = input.readBoolean() ? symbolTable.define(name, address) : symbolTable.addIfAbsent(name, address);
+            symbolTable.setAddress(id, address, input.readInt());
+            aliases[id] = input.readInt();
+        }
+        for (int id = 1; id <= symbolCount; id++) {
+            if (aliases[id] != 0) {
+                symbolTable.equate(id, aliases[id]); // the alias may have a higher id, so once every symbol is in
+            }
+        }
+
+        LiteralTable literalTable = new LiteralTable();
+        int literalCount = input.readInt();
+        ArrayList<LiteralTableEntry> literals = literalTable.table;
+        for (int id = 1; id <= literalCount; id++) {
+            String literal = input.readUTF();
+            literals.add(new LiteralTableEntry(id, literal, input.readInt()));
+        }
+
+        PoolTable poolTable = new PoolTable();
+        int poolCount = input.readInt();
+        for (int id = 1; id <= poolCount; id++) {
+            int literalId = input.readInt();
+            poolTable.table.put(id, new PoolTableEntry(literalId, input.readInt()));
+        }
+
+        ArrayList<String> unlinkableData = new ArrayList<>();
+        int unlinkableDataCount = input.readInt();
+        for (int i = 0; i < unlinkableDataCount; i++) {
+            unlinkableData.add(input.readUTF());
+        }
+
+        IntermediateCode intermediateCode = IntermediateCode.readBinary(input);
+        AssemblyResult result = new AssemblyResult(symbolTable, literalTable, poolTable, intermediateCode, inputAsmFileName);
+        result.includedFiles = includedFiles;
+        result.unlinkableData = unlinkableData;
+        return result;
+    }
+}
@@ -0,0 +1,186 @@
+import java.io.File;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+class AssemblyMetrics {
+    // wall time and allocation of each phase of one assembly, and counts of what it went through
+    // phases are also recorded as JFR events (assembler.Phase, assembler.Assembly) when a recording is running,
+    // e.g. java -XX:StartFlightRecording=filename=assembler.jfr Main batch ...
+    private static final com.sun.management.ThreadMXBean THREADS = threadBean();
+
+    public String module;
+    public boolean isCacheHit = false;
+    public int lines = 0;
+    public int tokens = 0;
+    public int symbols = 0;
+    public int literals = 0;
+    public int pools = 0;
+    public int originJumps = 0;
+
+    // indexed by AssemblyPhase.ordinal(), allocation is -1 where the JVM cannot measure it
+    public long[] phaseNanos = new long[AssemblyPhase.values().length];
+    public long[] phaseAllocatedBytes = new long[AssemblyPhase.values().length];
+    private long[] phaseStartNanos = new long[AssemblyPhase.values().length];
+    private long[] phaseStartBytes = new long[AssemblyPhase.values().length];
+    private AssemblyPhaseEvent[] phaseEvents = new AssemblyPhaseEvent[AssemblyPhase.values().length];
+
+    public AssemblyMetrics(String module) {
+        this.module = module;
+    }
+
+    // a phase must end on the thread it began on, different phases can run on different threads at the same time
+    public void begin(AssemblyPhase phase) {
+        AssemblyPhaseEvent event = new AssemblyPhaseEvent();
+        event.begin();
+        phaseEvents[phase.ordinal()] = event;
+        phaseStartBytes[phase.ordinal()] = allocatedBytes();
+        phaseStartNanos[phase.ordinal()] = System.nanoTime();
+    }
+
+    public void end(AssemblyPhase phase) {
+        int i = phase.ordinal();
+        phaseNanos[i] += System.nanoTime() - phaseStartNanos[i];
+        long bytes = allocatedBytes();
+        phaseAllocatedBytes[i] = bytes == -1 ? -1 : phaseAllocatedBytes[i] + bytes - phaseStartBytes[i];
+
+        AssemblyPhaseEvent event = phaseEvents[i];
+        phaseEvents[i] = null;
+        event.end();
+        if (event.shouldCommit()) {
+            event.module = module;
+            event.phase = phase.key;
+            event.allocatedBytes = phaseAllocatedBytes[i];
+            event.commit();
+        }
+    }
+
+    public void countTables(SymbolTable symbolTable, LiteralTable literalTable, PoolTable poolTable) {
+        symbols = symbolTable.size();
+        literals = literalTable.table.size();
+        pools = poolTable.table.size();
+    }
+
+    // one event per assembly with the counters
+    public void commitCounters() {
+        AssemblyEvent event = new AssemblyEvent();
+        if (event.shouldCommit()) {
+            event.module = module;
+            event.isCacheHit = isCacheHit;
+            event.lines = lines;
+            event.tokens = tokens;
+            event.symbols = symbols;
+            event.literals = literals;
+            event.pools = pools;
+            event.originJumps = originJumps;
+            event.commit();
+        }
+    }
+
+    private static long allocatedBytes() {
+        return THREADS != null ? THREADS.getCurrentThreadAllocatedBytes() : -1;
+    }
+
+    private static com.sun.management.ThreadMXBean threadBean() {
+        // per-thread allocation is a HotSpot extension
+        if (ManagementFactory.getThreadMXBean() instanceof com.sun.management.ThreadMXBean) {
+            com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+            if (threads.isThreadAllocatedMemorySupported() && threads.isThreadAllocatedMemoryEnabled()) {
+                return threads;
+            }
+        }
+        return null;
+    }
+
+    /*
+        metrics.json:
+        {"module": "...", "cacheHit": false,
+         "counters": {"lines": 0, "tokens": 0, "symbols": 0, "literals": 0, "pools": 0, "originJumps": 0},
+         "phases": {"lex": {"wallNanos": 0, "allocatedBytes": 0}, ...}}
+        phases that did not run (e.g. lexing on a cache hit) are left out
+    */
+    public void write(File file) throws IOException {
+        try (ChannelTextWriter output = ChannelTextWriter.open(file)) {
+            output.append("{\n  \"module\": \"");
+            for (int i = 0; i < module.length(); i++) {
+                char c = module.charAt(i);
+                if (c == '"' || c == '\\') {
+                    output.append('\\').append(c);
+                } else if (c < 0x20) {
+                    // control characters may not appear raw in a JSON string
+                    output.append(String.format("\\u%04x", (int) c));
+                } else {
+                    output.append(c);
+                }
+            }
+            output.append("\",\n  \"cacheHit\": ").append(isCacheHit ? "true" : "false").append(",\n");
+            output.append("  \"counters\": {\"lines\": ").append(lines)
+                .append(", \"tokens\": ").append(tokens)
+                .append(", \"symbols\": ").append(symbols)
+                .append(", \"literals\": ").append(literals)
+                .append(", \"pools\": ").append(pools)
+                .append(", \"originJumps\": ").append(originJumps).append("},\n");
+            output.append("  \"phases\": {");
+            boolean isFirst = true;
+            for (AssemblyPhase phase : AssemblyPhase.values()) {
+                if (phaseNanos[phase.ordinal()] == 0) {
+                    continue;
+                }
+                output.append(isFirst ? "\n" : ",\n");
+                isFirst = false;
+                output.append("    \"").append(phase.key).append("\": {\"wallNanos\": ").append(phaseNanos[phase.ordinal()])
+                    .append(", \"allocatedBytes\": ").append(phaseAllocatedBytes[phase.ordinal()]).append('}');
+            }
+            output.append("\n  }\n}\n");
+        }
+    }
+}
+
+@Name("assembler.Phase")
+@Label("Assembler Phase")
+@Category("Assembler")
+class AssemblyPhaseEvent extends Event {
+    @Label("Module")
+    String module;
+
+    @Label("Phase")
+    String phase;
+
+    @Label("Allocated")
+    @DataAmount
+    long allocatedBytes;
+}
+
+@Name("assembler.Assembly")
+@Label("Assembly")
+@Category("Assembler")
+class AssemblyEvent extends Event {
+    @Label("Module")
+    String module;
+
+    @Label("Cache Hit")
+    boolean isCacheHit;
+
+    @Label("Lines")
+    int lines;
+
+    @Label("Tokens")
+    int tokens;
+
+    @Label("Symbols")
+    int symbols;
+
+    @Label("Literals")
+    int literals;
+
+    @Label("Pools")
+    int pools;
+
+    @Label("ORIGIN Jumps")
+    int originJumps;
+}
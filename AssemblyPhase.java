@@ -0,0 +1,18 @@
+enum AssemblyPhase {
+    // the measured steps of one assembly, key is the name used in metrics.json and in the JFR events
+    LEX("lex"),
+    GENERATE_TABLES("generateTables"),
+    GENERATE_INTERMEDIATE_CODE("generateIntermediateCode"),
+    ONE_PASS("onePass"), // tables, intermediate code and target code together (Assembler.assembleOnePass)
+    WRITE_LITERAL_TABLE("writeLiteralTable"),
+    WRITE_SYMBOL_TABLE("writeSymbolTable"),
+    WRITE_POOL_TABLE("writePoolTable"),
+    WRITE_INTERMEDIATE_CODE("writeIntermediateCode"),
+    WRITE_BINARY_INTERMEDIATE_CODE("writeBinaryIntermediateCode");
+
+    public final String key;
+
+    AssemblyPhase(String key) {
+        this.key = key;
+    }
+}
@@ -0,0 +1,42 @@
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+
+class AssemblyResult {
+    // everything pass 1 produces for one input file
+    public final SymbolTable symbolTable;
+    public final LiteralTable literalTable;
+    public final PoolTable poolTable;
+    public final IntermediateCode intermediateCode;
+    public final AssemblyMetrics metrics; // the writes below are measured into it as well
+    public final MachineCode machineCode; // the target code, when it was generated in the same walk (one-pass mode), else null
+    public ArrayList<IncludedFile> includedFiles = new ArrayList<>(); // files spliced in by INCLUDE, as they were when read
+    // DC operands whose value depends on where the module is placed or on another module, other than a lone symbol (which
+    // is a symbol reference the linker patches), e.g. "DC X+3 on line 5 moves with the module". Linking the module fails on them
+    public ArrayList<String> unlinkableData = new ArrayList<>();
+
+    // for a result that was read back rather than assembled, only the table sizes are counted
+    public AssemblyResult(SymbolTable symbolTable, LiteralTable literalTable, PoolTable poolTable, IntermediateCode intermediateCode, String module) {
+        this(symbolTable, literalTable, poolTable, intermediateCode, new AssemblyMetrics(module));
+        metrics.countTables(symbolTable, literalTable, poolTable);
+    }
+
+    public AssemblyResult(SymbolTable symbolTable, LiteralTable literalTable, PoolTable poolTable, IntermediateCode intermediateCode, AssemblyMetrics metrics) {
+        this(symbolTable, literalTable, poolTable, intermediateCode, metrics, null);
+    }
+
+    public AssemblyResult(SymbolTable symbolTable, LiteralTable literalTable, PoolTable poolTable, IntermediateCode intermediateCode, AssemblyMetrics metrics,
+            MachineCode machineCode) {
+        this.symbolTable = symbolTable;
+        this.literalTable = literalTable;
+        this.poolTable = poolTable;
+        this.intermediateCode = intermediateCode;
+        this.metrics = metrics;
+        this.machineCode = machineCode;
+    }
+
+    // metrics.json, with the phases measured so far (so it is written after the other files)
+    public void writeMetrics(String outputDirectory) throws IOException {
+        metrics.write(new File(outputDirectory, "metrics.json"));
+    }
+}
@@ -0,0 +1,142 @@
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+
+class ChannelTextWriter implements Closeable {
+    // buffered UTF-8 text output straight into a channel, with fixed-width columns padded by hand
+    // (appendLeft(x, width) gives the same text as String.format("%-<width>s") / "%-<width>d")
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    private WritableByteChannel channel;
+    private ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+    private byte[] digits = new byte[20]; // a long has at most 19 digits and a sign
+
+    public ChannelTextWriter(WritableByteChannel channel) {
+        this.channel = channel;
+    }
+
+    // creates the parent directory if it does not exist
+    public static ChannelTextWriter open(File file) throws IOException {
+        File parentDir = file.getParentFile();
+        if (parentDir != null && !parentDir.exists()) {
+            parentDir.mkdirs();
+        }
+        return new ChannelTextWriter(FileChannel.open(file.toPath(),
+            StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING));
+    }
+
+    // the text a render call writes, for toString
+    public interface Render {
+        void render(ChannelTextWriter output) throws IOException;
+    }
+
+    public static String render(Render render) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ChannelTextWriter output = new ChannelTextWriter(Channels.newChannel(bytes))) {
+            render.render(output);
+        } catch (IOException e) {
+            throw new IllegalStateException(e); // a ByteArrayOutputStream does not fail
+        }
+        return bytes.toString(StandardCharsets.UTF_8);
+    }
+
+    public ChannelTextWriter append(char c) throws IOException {
+        if (c < 0x80) {
+            ensureSpace(1);
+            buffer.put((byte) c);
+        } else {
+            append(String.valueOf(c));
+        }
+        return this;
+    }
+
+    public ChannelTextWriter append(CharSequence text) throws IOException {
+        int length = text.length();
+        for (int i = 0; i < length; i++) {
+            char c = text.charAt(i);
+            if (c < 0x80) {
+                ensureSpace(1);
+                buffer.put((byte) c);
+            } else {
+                // rare, so the slow path encodes the whole code point
+                int end = Character.isHighSurrogate(c) && i + 1 < length ? i + 2 : i + 1;
+                byte[] encoded = text.subSequence(i, end).toString().getBytes(StandardCharsets.UTF_8);
+                ensureSpace(encoded.length);
+                buffer.put(encoded);
+                i = end - 1;
+            }
+        }
+        return this;
+    }
+
+    public ChannelTextWriter append(long value) throws IOException {
+        int length = toDigits(value);
+        ensureSpace(length);
+        buffer.put(digits, digits.length - length, length);
+        return this;
+    }
+
+    public ChannelTextWriter appendLeft(CharSequence text, int width) throws IOException {
+        append(text);
+        return pad(width - text.length());
+    }
+
+    public ChannelTextWriter appendLeft(long value, int width) throws IOException {
+        int length = toDigits(value);
+        ensureSpace(length);
+        buffer.put(digits, digits.length - length, length);
+        return pad(width - length);
+    }
+
+    private ChannelTextWriter pad(int count) throws IOException {
+        for (int i = 0; i < count; i++) {
+            ensureSpace(1);
+            buffer.put((byte) ' ');
+        }
+        return this;
+    }
+
+    // writes the digits to the end of the digits array and returns how many there are
+    private int toDigits(long value) {
+        long remaining = value < 0 ? value : -value; // counted on the negative side, which also holds Long.MIN_VALUE
+        int position = digits.length;
+        do {
+            digits[--position] = (byte) ('0' - remaining % 10);
+            remaining /= 10;
+        } while (remaining != 0);
+        if (value < 0) {
+            digits[--position] = '-';
+        }
+        return digits.length - position;
+    }
+
+    private void ensureSpace(int bytes) throws IOException {
+        if (buffer.remaining() < bytes) {
+            flush();
+        }
+    }
+
+    public void flush() throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        buffer.clear();
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            flush();
+        } finally {
+            channel.close();
+        }
+    }
+}
@@ -0,0 +1,18 @@
+enum Directive {
+    // mnemonics that the assembler itself acts on, everything else is NONE
+    NONE, START, END, ORIGIN, EQU, LTORG, DS, DC, INCLUDE;
+
+    public static Directive forMnemonic(String mnemonic) {
+        switch (mnemonic) {
+            case "start": return START;
+            case "end": return END;
+            case "origin": return ORIGIN;
+            case "equ": return EQU;
+            case "ltorg": return LTORG;
+            case "ds": return DS;
+            case "dc": return DC;
+            case "include": return INCLUDE;
+            default: return NONE;
+        }
+    }
+}
@@ -0,0 +1,339 @@
+import java.util.Arrays;
+import java.util.HashMap;
+
+class ExpressionTable {
+    // the operands of ORIGIN, EQU and DC: symbols and constants with +, -, * and parentheses, written as one word
+    // (e.g. L5+3, (TABLE-BASE)*2, '5'; a constant may be quoted as in DC '5')
+    // each distinct text is parsed once into postfix code over symbol ids, so using it again looks up no names. Its value
+    // is memoized together with the versions of the symbols it uses (SymbolTable.getVersion), and is only computed again
+    // once one of them changed. Its relocation (how far it moves when the linker moves the module) is worked out with it
+    private final SymbolTable symbolTable;
+    private final HashMap<String, Expression> expressions = new HashMap<>();
+    private int[] stack = new int[16]; // shared by all evaluations
+    private int[] relocationStack = new int[16]; // the relocation of each value on the stack
+    private final Parser parser = new Parser(); // and its buffers by all parses
+    public int evaluations = 0; // values computed, memoized ones not counted
+
+    public ExpressionTable(SymbolTable symbolTable) {
+        this.symbolTable = symbolTable;
+    }
+
+    // the expression for the text, every symbol it uses must already be in the symbol table (ORIGIN, EQU)
+    public Expression get(String text, int lineNumber) {
+        return get(text, lineNumber, false, 0);
+    }
+
+    // the expression for the text, a symbol it uses that is not in the symbol table yet is added with newSymbolAddress
+    // as an operand would be (DC, whose value is only taken once every symbol is defined)
+    public Expression getAdding(String text, int lineNumber, int newSymbolAddress) {
+        return get(text, lineNumber, true, newSymbolAddress);
+    }
+
+    private Expression get(String text, int lineNumber, boolean addsSymbols, int newSymbolAddress) {
+        if (text == null) {
+            throw new IllegalStateException("Line " + lineNumber + ": missing operand");
+        }
+        Expression expression = expressions.get(text);
+        if (expression == null) {
+            expression = parser.parse(text, lineNumber, addsSymbols, newSymbolAddress);
+            expressions.put(text, expression);
+        }
+        return expression;
+    }
+
+    // 1 for a lone label or a label plus a constant, 0 for a constant or the difference of two labels (see SymbolTable.getRelocation)
+    public int relocation(Expression expression) {
+        value(expression);
+        return expression.relocation;
+    }
+
+    public int value(Expression expression) {
+        int[] symbolIds = expression.symbolIds;
+        if (expression.isEvaluated) {
+            int i = 0;
+            while (i < symbolIds.length && symbolTable.getVersion(symbolIds[i]) == expression.versions[i]) {
+                i++;
+            }
+            if (i == symbolIds.length) {
+                return expression.value;
+            }
+        }
+
+        if (stack.length < expression.depth) {
+            stack = new int[expression.depth];
+            relocationStack = new int[expression.depth];
+        }
+        int[] code = expression.code;
+        int[] relocations = relocationStack;
+        int top = -1;
+        for (int pc = 0; pc < code.length; pc++) {
+            switch (code[pc]) {
+                case Expression.CONSTANT:
+                    stack[++top] = code[++pc];
+                    relocations[top] = 0;
+                    break;
+                case Expression.SYMBOL: {
+                    int id = code[++pc];
+                    stack[++top] = symbolTable.getAddress(id);
+                    relocations[top] = symbolTable.isDefined(id) ? symbolTable.getRelocation(id) : SymbolTable.NOT_RELOCATABLE;
+                    break;
+                }
+                case Expression.ADD:
+                    top--;
+                    stack[top] += stack[top + 1];
+                    relocations[top] = combine(relocations[top], relocations[top + 1], 1);
+                    break;
+                case Expression.SUBTRACT:
+                    top--;
+                    stack[top] -= stack[top + 1];
+                    relocations[top] = combine(relocations[top], relocations[top + 1], -1);
+                    break;
+                case Expression.MULTIPLY:
+                    top--;
+                    // an address times a constant moves that many times as far, an address times an address cannot be moved
+                    if (relocations[top] == 0) {
+                        relocations[top] = combine(0, relocations[top + 1], stack[top]);
+                    } else if (relocations[top + 1] == 0) {
+                        relocations[top] = combine(0, relocations[top], stack[top + 1]);
+                    } else {
+                        relocations[top] = SymbolTable.NOT_RELOCATABLE;
+                    }
+                    stack[top] *= stack[top + 1];
+                    break;
+                default: // NEGATE
+                    stack[top] = -stack[top];
+                    relocations[top] = combine(0, relocations[top], -1);
+                    break;
+            }
+        }
+        for (int i = 0; i < symbolIds.length; i++) {
+            expression.versions[i] = symbolTable.getVersion(symbolIds[i]);
+        }
+        expression.value = stack[0];
+        expression.relocation = relocations[0];
+        expression.isEvaluated = true;
+        evaluations++;
+        return expression.value;
+    }
+
+    // first + factor * second, as relocations
+    private static int combine(int first, int second, int factor) {
+        if (first == SymbolTable.NOT_RELOCATABLE || second == SymbolTable.NOT_RELOCATABLE) {
+            return SymbolTable.NOT_RELOCATABLE;
+        }
+        return first + factor * second;
+    }
+
+    // recursive descent over the text, writing the postfix code as it goes
+    //   expression = term {("+" | "-") term}   term = factor {"*" factor}   factor = ("+" | "-") factor | operand | "(" expression ")"
+    private class Parser {
+        private String text;
+        private int lineNumber;
+        private boolean addsSymbols;
+        private int newSymbolAddress;
+        private int position;
+        private int[] code = new int[16];
+        private int size;
+        private int[] symbolIds = new int[8];
+        private int symbolCount;
+        private int depth;
+        private int maxDepth;
+        private final Slice name = new Slice(); // a symbol name in text, looked up without making a String of it
+
+        Expression parse(String text, int lineNumber, boolean addsSymbols, int newSymbolAddress) {
+            this.text = text;
+            this.lineNumber = lineNumber;
+            this.addsSymbols = addsSymbols;
+            this.newSymbolAddress = newSymbolAddress;
+            position = 0;
+            size = 0;
+            symbolCount = 0;
+            depth = 0;
+            maxDepth = 0;
+            expression();
+            if (position < text.length()) {
+                throw error("unexpected " + text.charAt(position));
+            }
+            int[] ids = Arrays.copyOf(symbolIds, symbolCount);
+            return new Expression(text, Arrays.copyOf(code, size), ids, maxDepth);
+        }
+
+        private void expression() {
+            term();
+            while (position < text.length() && (text.charAt(position) == '+' || text.charAt(position) == '-')) {
+                char operator = text.charAt(position++);
+                term();
+                emit(operator == '+' ? Expression.ADD : Expression.SUBTRACT);
+                depth--;
+            }
+        }
+
+        private void term() {
+            factor();
+            while (position < text.length() && text.charAt(position) == '*') {
+                position++;
+                factor();
+                emit(Expression.MULTIPLY);
+                depth--;
+            }
+        }
+
+        private void factor() {
+            if (position == text.length()) {
+                throw error("operand expected at the end");
+            }
+            char first = text.charAt(position);
+            if (first == '+' || first == '-') {
+                position++;
+                factor();
+                if (first == '-') {
+                    emit(Expression.NEGATE);
+                }
+            } else if (first == '(') {
+                position++;
+                expression();
+                if (position == text.length() || text.charAt(position) != ')') {
+                    throw error("missing )");
+                }
+                position++;
+            } else if (first == '\'') {
+                int end = text.indexOf('\'', position + 1);
+                if (end == -1) {
+                    throw error("missing '");
+                }
+                push(Expression.CONSTANT, number(position + 1, end));
+                position = end + 1;
+            } else if (Character.isDigit(first)) {
+                int end = position;
+                while (end < text.length() && Character.isDigit(text.charAt(end))) {
+                    end++;
+                }
+                push(Expression.CONSTANT, number(position, end));
+                position = end;
+            } else if (Character.isLetter(first) || first == '_') {
+                int end = position;
+                while (end < text.length() && "+-*()'".indexOf(text.charAt(end)) == -1) {
+                    end++;
+                }
+                name.set(text, position, end);
+                int id = addsSymbols ? symbolTable.addIfAbsent(name, newSymbolAddress) : symbolTable.lookup(name);
+                if (id == -1) {
+                    throw error(name + " is not defined before it is used");
+                }
+                push(Expression.SYMBOL, id);
+                addSymbol(id);
+                position = end;
+            } else {
+                throw error("unexpected " + first);
+            }
+        }
+
+        private int number(int start, int end) {
+            try {
+                return Integer.parseInt(text, start, end, 10);
+            } catch (NumberFormatException e) {
+                throw error("not a number: " + text.substring(start, end));
+            }
+        }
+
+        private void push(int operation, int operand) {
+            emit(operation);
+            emit(operand);
+            maxDepth = Math.max(maxDepth, ++depth);
+        }
+
+        private void emit(int value) {
+            if (size == code.length) {
+                code = Arrays.copyOf(code, size * 2);
+            }
+            code[size++] = value;
+        }
+
+        private void addSymbol(int id) {
+            for (int i = 0; i < symbolCount; i++) {
+                if (symbolIds[i] == id) {
+                    return;
+                }
+            }
+            if (symbolCount == symbolIds.length) {
+                symbolIds = Arrays.copyOf(symbolIds, symbolCount * 2);
+            }
+            symbolIds[symbolCount++] = id;
+        }
+
+        private IllegalStateException error(String message) {
+            return new IllegalStateException("Line " + lineNumber + ": bad expression " + text + ": " + message);
+        }
+    }
+}
+
+// part of a String, as a CharSequence that can be pointed elsewhere
+class Slice implements CharSequence {
+    private String text;
+    private int start;
+    private int end;
+
+    public void set(String text, int start, int end) {
+        this.text = text;
+        this.start = start;
+        this.end = end;
+    }
+
+    public int length() {
+        return end - start;
+    }
+
+    public char charAt(int index) {
+        return text.charAt(start + index);
+    }
+
+    public CharSequence subSequence(int from, int to) {
+        return text.substring(start + from, start + to);
+    }
+
+    @Override
+    public String toString() {
+        return text.substring(start, end);
+    }
+}
+
+class Expression {
+    // postfix code: CONSTANT value, SYMBOL id, or an operator that replaces the top of the stack
+    static final int CONSTANT = 0;
+    static final int SYMBOL = 1;
+    static final int ADD = 2;
+    static final int SUBTRACT = 3;
+    static final int MULTIPLY = 4;
+    static final int NEGATE = 5;
+
+    final String text;
+    final int[] code;
+    final int[] symbolIds; // the symbols it uses, each once
+    final int depth; // stack depth needed to evaluate it
+    // memoized by ExpressionTable.value
+    final int[] versions; // SymbolTable.getVersion of symbolIds[i] when value was computed
+    int value;
+    int relocation;
+    boolean isEvaluated = false;
+
+    Expression(String text, int[] code, int[] symbolIds, int depth) {
+        this.text = text;
+        this.code = code;
+        this.symbolIds = symbolIds;
+        this.depth = depth;
+        this.versions = new int[symbolIds.length];
+    }
+
+    // a lone symbol, e.g. the operand of a classic EQU
+    public boolean isSymbol() {
+        return code.length == 2 && code[0] == SYMBOL;
+    }
+
+    public int symbolId() {
+        return code[1];
+    }
+
+    public boolean usesSymbols() {
+        return symbolIds.length > 0;
+    }
+}
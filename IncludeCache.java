@@ -0,0 +1,96 @@
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+class IncludeCache {
+    // the files named by INCLUDE, tokenized once per process and spliced into every file that includes them
+    // an entry is checked against the modification time and size of the file (and of the files it includes) on every use
+    // and tokenized again if one changed. Beyond the capacity the least recently used entries are dropped
+    public static final String CAPACITY_PROPERTY = "assembler.includeCacheSize"; // number of files, 256 by default
+    public static final IncludeCache shared = new IncludeCache(Integer.getInteger(CAPACITY_PROPERTY, 256));
+
+    private final LinkedHashMap<String, TokenStream> entries; // by canonical path, least recently used first
+    public final AtomicInteger hits = new AtomicInteger();
+    public final AtomicInteger misses = new AtomicInteger();
+
+    public IncludeCache(int capacity) {
+        entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, TokenStream> eldest) {
+                return size() > capacity;
+            }
+        };
+    }
+
+    // the tokens of the file with its own includes spliced in, includeChain holds the canonical paths of the files
+    // being tokenized around it (to report include cycles)
+    // two threads that miss the same file at the same time both tokenize it; no lock is held while tokenizing, as
+    // that could deadlock on files that include each other
+    public TokenStream get(File file, ArrayList<String> includeChain) throws IOException {
+        String path = file.getCanonicalPath();
+        if (includeChain.contains(path)) {
+            throw new IOException("INCLUDE cycle: " + String.join(" -> ", includeChain) + " -> " + path);
+        }
+        TokenStream tokens;
+        synchronized (entries) {
+            tokens = entries.get(path);
+        }
+        if (tokens != null && tokens.isUpToDate() && !includesAny(tokens, includeChain)) {
+            hits.incrementAndGet();
+            return tokens;
+        }
+
+        misses.incrementAndGet();
+        IncludedFile stamp = IncludedFile.of(path); // taken first, so a change while tokenizing shows on the next use
+        ArrayList<String> chain = new ArrayList<>(includeChain);
+        chain.add(path);
+        tokens = Lexer.tokenize(path, chain);
+        tokens.includedFiles.add(0, stamp);
+        synchronized (entries) {
+            entries.put(path, tokens);
+        }
+        return tokens;
+    }
+
+    private static boolean includesAny(TokenStream tokens, ArrayList<String> paths) {
+        for (IncludedFile includedFile : tokens.includedFiles) {
+            if (paths.contains(includedFile.path)) {
+                return true; // would be a cycle, tokenized again so that it is reported
+            }
+        }
+        return false;
+    }
+}
+
+class IncludedFile {
+    // a file spliced in by INCLUDE, as it was when it was tokenized
+    String path; // canonical
+    long lastModified;
+    long size;
+
+    public IncludedFile(String path, long lastModified, long size) {
+        this.path = path;
+        this.lastModified = lastModified;
+        this.size = size;
+    }
+
+    public static IncludedFile of(String path) throws IOException {
+        BasicFileAttributes attributes = Files.readAttributes(new File(path).toPath(), BasicFileAttributes.class);
+        return new IncludedFile(path, attributes.lastModifiedTime().toMillis(), attributes.size());
+    }
+
+    public boolean isUnchanged() throws IOException {
+        try {
+            IncludedFile now = of(path);
+            return now.lastModified == lastModified && now.size == size;
+        } catch (NoSuchFileException e) {
+            return false;
+        }
+    }
+}
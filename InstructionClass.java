@@ -0,0 +1,7 @@
+enum InstructionClass {
+    IS, // imperative statement
+    AD, // assembler directive
+    DL, // declarative statement
+    RG, // register
+    CC  // condition code
+}
@@ -0,0 +1,185 @@
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+
+class IntermediateCode {
+    /*
+        kind of an item, the value is the opcode for the first five and the id / constant for the rest
+        IS, AD, DL, CC - printed as (class, opcode)
+        RG - printed as (opcode)
+        SYMBOL, LITERAL, CONSTANT - printed as (S, id), (L, id) and (C, constant)
+    */
+    public static final byte IS = 0;
+    public static final byte AD = 1;
+    public static final byte DL = 2;
+    public static final byte RG = 3;
+    public static final byte CC = 4;
+    public static final byte SYMBOL = 5;
+    public static final byte LITERAL = 6;
+    public static final byte CONSTANT = 7;
+
+    private static final String[] KIND_NAMES = {"IS", "AD", "DL", "RG", "CC", "S", "L", "C"};
+    private static final int MAGIC = 0x49430002; // "IC" and format version 2
+
+    // item i is (kinds[i], values[i]), statement s owns the items from statementStarts[s] up to the start of the next statement
+    public byte[] kinds;
+    public int[] values;
+    public int itemCount = 0;
+    public int[] statementStarts;
+    public int[] statementLines; // source line number of each statement
+    public int[] statementAddresses; // address of each statement (meaningful for IS and DL statements)
+    public int statementCount = 0;
+
+    public IntermediateCode() {
+        this(256, 64);
+    }
+
+    // capacities are only a first size, the arrays grow as needed
+    public IntermediateCode(int itemCapacity, int statementCapacity) {
+        kinds = new byte[itemCapacity];
+        values = new int[itemCapacity];
+        statementStarts = new int[statementCapacity];
+        statementLines = new int[statementCapacity];
+        statementAddresses = new int[statementCapacity];
+    }
+
+    public static byte kindOf(InstructionClass instructionClass) {
+        switch (instructionClass) {
+            case IS: return IS;
+            case AD: return AD;
+            case DL: return DL;
+            case RG: return RG;
+            default: return CC;
+        }
+    }
+
+    public void startStatement(int lineNumber, int address) {
+        if (statementCount == statementStarts.length) {
+            statementStarts = Arrays.copyOf(statementStarts, statementCount * 2);
+            statementLines = Arrays.copyOf(statementLines, statementCount * 2);
+            statementAddresses = Arrays.copyOf(statementAddresses, statementCount * 2);
+        }
+        statementStarts[statementCount] = itemCount;
+        statementLines[statementCount] = lineNumber;
+        statementAddresses[statementCount] = address;
+        statementCount++;
+    }
+
+    public void add(byte kind, int value) {
+        if (statementCount == 0) {
+            startStatement(0, 0);
+        }
+        if (itemCount == kinds.length) {
+            kinds = Arrays.copyOf(kinds, itemCount * 2);
+            values = Arrays.copyOf(values, itemCount * 2);
+        }
+        kinds[itemCount] = kind;
+        values[itemCount] = value;
+        itemCount++;
+    }
+
+    public int statementEnd(int statement) {
+        return statement + 1 < statementCount ? statementStarts[statement + 1] : itemCount;
+    }
+
+    // text form, one statement per line (this is what intermediate_code.txt contains)
+    // rendered a statement at a time into the writer's buffer, so no copy of the whole text is held
+    public void write(ChannelTextWriter output) throws IOException {
+        for (int statement = 0; statement < statementCount; statement++) {
+            if (statement > 0) {
+                output.append('\n');
+            }
+            writeStatement(output, statement);
+        }
+    }
+
+    public void writeStatement(ChannelTextWriter output, int statement) throws IOException {
+        for (int i = statementStarts[statement]; i < statementEnd(statement); i++) {
+            output.append('(');
+            if (kinds[i] != RG) {
+                output.append(KIND_NAMES[kinds[i]]).append(", ");
+            }
+            output.append(values[i]).append(") ");
+        }
+    }
+
+    @Override
+    public String toString() {
+        return ChannelTextWriter.render(this::write);
+    }
+
+    /*
+        binary (.ic) form: int magic, then variable-length numbers (7 bits per byte, zigzag encoded):
+        statementCount, itemCount, for each statement the change in start item, line number and address
+        from the previous statement, then itemCount kind bytes and itemCount values
+    */
+    public void writeBinary(DataOutputStream output) throws IOException {
+        output.writeInt(MAGIC);
+        writeNumber(output, statementCount);
+        writeNumber(output, itemCount);
+        int previousStart = 0;
+        int previousLine = 0;
+        int previousAddress = 0;
+        for (int statement = 0; statement < statementCount; statement++) {
+            writeNumber(output, statementStarts[statement] - previousStart);
+            writeNumber(output, statementLines[statement] - previousLine);
+            writeNumber(output, statementAddresses[statement] - previousAddress);
+            previousStart = statementStarts[statement];
+            previousLine = statementLines[statement];
+            previousAddress = statementAddresses[statement];
+        }
+        output.write(kinds, 0, itemCount);
+        for (int i = 0; i < itemCount; i++) {
+            writeNumber(output, values[i]);
+        }
+    }
+
+    public static IntermediateCode readBinary(DataInputStream input) throws IOException {
+        if (input.readInt() != MAGIC) {
+            throw new IOException("Not an intermediate code file");
+        }
+        int statementCount = readNumber(input);
+        int itemCount = readNumber(input);
+        IntermediateCode intermediateCode = new IntermediateCode(Math.max(1, itemCount), Math.max(1, statementCount));
+        int start = 0;
+        int line = 0;
+        int address = 0;
+        for (int statement = 0; statement < statementCount; statement++) {
+            start += readNumber(input);
+            line += readNumber(input);
+            address += readNumber(input);
+            intermediateCode.statementStarts[statement] = start;
+            intermediateCode.statementLines[statement] = line;
+            intermediateCode.statementAddresses[statement] = address;
+        }
+        input.readFully(intermediateCode.kinds, 0, itemCount);
+        for (int i = 0; i < itemCount; i++) {
+            intermediateCode.values[i] = readNumber(input);
+        }
+        intermediateCode.statementCount = statementCount;
+        intermediateCode.itemCount = itemCount;
+        return intermediateCode;
+    }
+
+    private static void writeNumber(DataOutputStream output, int number) throws IOException {
+        int bits = (number << 1) ^ (number >> 31); // zigzag, so small negative numbers stay short
+        while ((bits & ~0x7F) != 0) {
+            output.writeByte((bits & 0x7F) | 0x80);
+            bits >>>= 7;
+        }
+        output.writeByte(bits);
+    }
+
+    private static int readNumber(DataInputStream input) throws IOException {
+        int bits = 0;
+        for (int shift = 0; shift < 35; shift += 7) {
+            int b = input.readUnsignedByte();
+            bits |= (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return (bits >>> 1) ^ -(bits & 1);
+            }
+        }
+        throw new IOException("Malformed number in intermediate code file");
+    }
+}
@@ -0,0 +1,308 @@
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.NoSuchFileException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.function.IntConsumer;
+
+class Lexer {
+    // files from this size on are lexed in parts on the fork/join pool, in parallel when it has more than one thread
+    // (even on one thread the parts allocate less, as the joined stream is sized once instead of growing)
+    public static final int PARALLEL_THRESHOLD = 1 << 20;
+    // -Dassembler.lexerPartSize=N lexes every file in parts of N bytes, whatever its size and the number of cores
+    public static final String PART_SIZE_PROPERTY = "assembler.lexerPartSize";
+    private static final int MIN_PART_SIZE = 1 << 16;
+
+    // read the input file once and turn it into a token stream that both walks of pass 1 can share
+    // each word is also classified here (lexical kind and MachineOpcodeTable entry), once per distinct word, so the walks
+    // only read the result. An INCLUDE <file> line is replaced by the tokens of that file (see IncludeCache), the lines
+    // after it are numbered as if the file had been pasted in
+    public static TokenStream tokenize(String inputAsmFileName) throws IOException {
+        return tokenize(inputAsmFileName, null);
+    }
+
+    // includeChain holds the canonical paths of the files that include this one and of the file itself, null for a file
+    // that is assembled
+    static TokenStream tokenize(String inputAsmFileName, ArrayList<String> includeChain) throws IOException {
+        Source source = new Source(inputAsmFileName, includeChain);
+        MappedSourceReader file = source.file;
+        int partSize = Integer.getInteger(PART_SIZE_PROPERTY, 0);
+        TokenStream tokens;
+        if (partSize > 0) {
+            tokens = tokenize(source, partSize);
+        } else if (file.end() >= PARALLEL_THRESHOLD) {
+            tokens = tokenize(source, Math.max(MIN_PART_SIZE, file.end() / (ForkJoinPool.getCommonPoolParallelism() * 4)));
+        } else {
+            tokens = tokenizePart(source, file);
+        }
+        // blank lines at the end count too, a last line without a line end as well
+        tokens.lines = tokens.lineEnds + (file.end() > 0 && file.byteAt(file.end() - 1) != '\n' ? 1 : 0);
+        return tokens;
+    }
+
+    // lex the file in parts of about partSize bytes, cut at line ends, on the fork/join pool and join them into one stream
+    // (the same tokens as the whole file lexed at once). A token never spans lines, so the parts are independent: only
+    // their line numbers and their place in the stream depend on the parts before, and both come from prefix sums
+    public static TokenStream tokenize(String inputAsmFileName, int partSize) throws IOException {
+        return tokenize(new Source(inputAsmFileName, null), partSize);
+    }
+
+    private static TokenStream tokenize(Source source, int partSize) throws IOException {
+        MappedSourceReader file = source.file;
+        int[] partStarts = partStarts(file, Math.max(1, partSize)); // part i is from partStarts[i] to partStarts[i + 1]
+        int parts = partStarts.length - 1;
+        TokenStream[] partTokens = new TokenStream[parts];
+        try {
+            ForkJoinPool.commonPool().invoke(new ForEachPart(0, parts, part -> {
+                try {
+                    partTokens[part] = tokenizePart(source, new MappedSourceReader(file, partStarts[part], partStarts[part + 1]));
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }));
+        } catch (UncheckedIOException e) {
+            throw e.getCause(); // an INCLUDE that failed
+        }
+
+        int[] tokenStarts = new int[parts + 1];
+        int[] lineOffsets = new int[parts];
+        ArrayList<IncludedFile> includedFiles = new ArrayList<>();
+        for (int part = 0; part < parts; part++) {
+            tokenStarts[part + 1] = tokenStarts[part] + partTokens[part].size;
+            if (part + 1 < parts) {
+                lineOffsets[part + 1] = lineOffsets[part] + partTokens[part].lineEnds;
+            }
+            includedFiles.addAll(partTokens[part].includedFiles);
+        }
+        TokenStream tokens = new TokenStream(Math.max(1, tokenStarts[parts]), includedFiles);
+        ForkJoinPool.commonPool().invoke(new ForEachPart(0, parts, part -> tokens.place(partTokens[part], tokenStarts[part], lineOffsets[part])));
+        tokens.size = tokenStarts[parts];
+        tokens.lineEnds = lineOffsets[parts - 1] + partTokens[parts - 1].lineEnds;
+        return tokens;
+    }
+
+    // tokens of the bytes the reader covers, with line numbers counted from its start
+    private static TokenStream tokenizePart(Source source, MappedSourceReader reader) throws IOException {
+        TokenStream tokens = new TokenStream();
+        InternPool internedTexts = new InternPool(reader); // equal words share one String
+        boolean isLineStartPending = false; // the first word of the line was a lone comma
+        int lineShift = 0; // lines spliced in by INCLUDE so far, less the INCLUDE lines they replace
+
+        while (reader.readWord()) {
+            int length = reader.wordLength;
+            // remove the comma from the end
+            if (reader.byteAt(reader.wordOffset + length - 1) == ',') {
+                length--;
+            }
+            if (length == 0) {
+                isLineStartPending |= reader.isFirstWordInLine;
+                continue; // a lone comma
+            }
+
+            int slot = internedTexts.intern(reader.wordOffset, length);
+            MachineOpcodeTableEntry instruction = internedTexts.instructions[slot];
+            if (instruction != null && instruction.directive == Directive.INCLUDE) {
+                lineShift += include(source, reader, tokens, reader.lineNumber + lineShift) - 1;
+                continue;
+            }
+            tokens.add(internedTexts.kinds[slot], reader.lineNumber + lineShift, reader.isFirstWordInLine || isLineStartPending,
+                internedTexts.texts[slot], instruction);
+            isLineStartPending = false;
+        }
+        tokens.lineEnds = reader.lineNumber - 1 + lineShift;
+        return tokens;
+    }
+
+    // reader is at INCLUDE: splice the tokens of the file named after it into tokens, the file's first line becoming
+    // lineNumber. Returns the number of lines it takes (at least one, the INCLUDE line)
+    private static int include(Source source, MappedSourceReader reader, TokenStream tokens, int lineNumber) throws IOException {
+        int includeLine = reader.lineNumber;
+        if (!reader.isFirstWordInLine) {
+            throw new IOException(where(source, reader, includeLine) + "INCLUDE must start the line");
+        }
+        if (!reader.readWord() || reader.isFirstWordInLine) {
+            throw new IOException(where(source, reader, includeLine) + "INCLUDE without a file name");
+        }
+        String includedFileName = reader.text(reader.wordOffset, reader.wordLength);
+        if (reader.readWord()) {
+            if (!reader.isFirstWordInLine) {
+                throw new IOException(where(source, reader, includeLine) + "unexpected " + reader.word() + " after the INCLUDE file name");
+            }
+            reader.unreadWord();
+        }
+
+        File includedFile = new File(includedFileName);
+        if (!includedFile.isAbsolute()) {
+            includedFile = new File(new File(source.fileName).getAbsoluteFile().getParentFile(), includedFileName);
+        }
+        TokenStream included;
+        try {
+            included = IncludeCache.shared.get(includedFile, source.includeChain());
+        } catch (NoSuchFileException e) {
+            throw new IOException(where(source, reader, includeLine) + "INCLUDE of a missing file " + e.getFile(), e);
+        } catch (IOException e) {
+            throw new IOException(where(source, reader, includeLine) + e.getMessage(), e); // a cycle, or a failure inside the file
+        }
+        tokens.splice(included, lineNumber - 1);
+        return Math.max(1, included.lines);
+    }
+
+    // file:line: of an INCLUDE for its messages, the line counted in the file even when the reader is over a part of it
+    private static String where(Source source, MappedSourceReader reader, int lineNumber) {
+        return source.fileName + ":" + (reader.linesBefore() + lineNumber) + ": ";
+    }
+
+    // the file being lexed and where it is included from
+    private static class Source {
+        final String fileName;
+        final MappedSourceReader file;
+        private ArrayList<String> includeChain;
+
+        Source(String fileName, ArrayList<String> includeChain) throws IOException {
+            this.fileName = fileName;
+            this.file = new MappedSourceReader(fileName);
+            this.includeChain = includeChain;
+        }
+
+        // found on the first INCLUDE of a file that is assembled, as it needs the file system
+        synchronized ArrayList<String> includeChain() throws IOException {
+            if (includeChain == null) {
+                includeChain = new ArrayList<>();
+                includeChain.add(new File(fileName).getCanonicalPath());
+            }
+            return includeChain;
+        }
+    }
+
+    // cut the file into parts of at least partSize bytes, each starting at the beginning of a line
+    private static int[] partStarts(MappedSourceReader file, int partSize) {
+        int end = file.end();
+        int[] starts = new int[end / partSize + 2];
+        int parts = 0;
+        starts[0] = 0;
+        int cut = partSize;
+        while (cut < end) {
+            while (cut < end && file.byteAt(cut - 1) != '\n') {
+                cut++;
+            }
+            if (cut == end) {
+                break;
+            }
+            starts[++parts] = cut;
+            cut += partSize;
+        }
+        starts[++parts] = end;
+        return Arrays.copyOf(starts, parts + 1);
+    }
+
+    // runs step for each part from from to to - 1, splitting the range in halves down to single parts
+    private static class ForEachPart extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+        private final int from;
+        private final int to;
+        private final IntConsumer step;
+
+        ForEachPart(int from, int to, IntConsumer step) {
+            this.from = from;
+            this.to = to;
+            this.step = step;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from <= 1) {
+                if (from < to) {
+                    step.accept(from);
+                }
+                return;
+            }
+            int middle = (from + to) >>> 1;
+            invokeAll(new ForEachPart(from, middle, step), new ForEachPart(middle, to, step));
+        }
+    }
+
+    // open addressing table from a slice of the source to its String and classification, so a word is only turned into
+    // a String and looked up in MachineOpcodeTable the first time it is seen
+    private static class InternPool {
+        private MappedSourceReader source;
+        private int[] offsets = new int[256]; // where the word was first seen in the source
+        private int[] lengths = new int[256];
+        String[] texts = new String[256];
+        byte[] kinds = new byte[256]; // TokenStream.kindOf the text
+        MachineOpcodeTableEntry[] instructions = new MachineOpcodeTableEntry[256];
+        private int size = 0;
+
+        InternPool(MappedSourceReader source) {
+            this.source = source;
+        }
+
+        // slot of the word in texts, kinds and instructions (valid until the next intern)
+        int intern(int offset, int length) {
+            if ((size + 1) * 2 > texts.length) {
+                grow();
+            }
+            int mask = texts.length - 1;
+            int slot = hash(offset, length) & mask;
+            while (texts[slot] != null) {
+                if (lengths[slot] == length && isSameSlice(offsets[slot], offset, length)) {
+                    return slot;
+                }
+                slot = (slot + 1) & mask;
+            }
+            offsets[slot] = offset;
+            lengths[slot] = length;
+            texts[slot] = source.text(offset, length);
+            kinds[slot] = TokenStream.kindOf(texts[slot]);
+            instructions[slot] = MachineOpcodeTable.get(texts[slot]);
+            size++;
+            return slot;
+        }
+
+        private boolean isSameSlice(int offset1, int offset2, int length) {
+            for (int i = 0; i < length; i++) {
+                if (source.byteAt(offset1 + i) != source.byteAt(offset2 + i)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        private int hash(int offset, int length) {
+            int hash = 0;
+            for (int i = 0; i < length; i++) {
+                hash = 31 * hash + source.byteAt(offset + i);
+            }
+            return hash ^ (hash >>> 16);
+        }
+
+        private void grow() {
+            int[] oldOffsets = offsets;
+            int[] oldLengths = lengths;
+            String[] oldTexts = texts;
+            byte[] oldKinds = kinds;
+            MachineOpcodeTableEntry[] oldInstructions = instructions;
+            offsets = new int[oldTexts.length * 2];
+            lengths = new int[oldTexts.length * 2];
+            texts = new String[oldTexts.length * 2];
+            kinds = new byte[oldTexts.length * 2];
+            instructions = new MachineOpcodeTableEntry[oldTexts.length * 2];
+            int mask = texts.length - 1;
+            for (int i = 0; i < oldTexts.length; i++) {
+                if (oldTexts[i] != null) {
+                    int slot = hash(oldOffsets[i], oldLengths[i]) & mask;
+                    while (texts[slot] != null) {
+                        slot = (slot + 1) & mask;
+                    }
+                    offsets[slot] = oldOffsets[i];
+                    lengths[slot] = oldLengths[i];
+                    texts[slot] = oldTexts[i];
+                    kinds[slot] = oldKinds[i];
+                    instructions[slot] = oldInstructions[i];
+                }
+            }
+        }
+    }
+}
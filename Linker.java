@@ -0,0 +1,205 @@
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+class Linker {
+    // links separately assembled modules into one object image
+    // every symbol a module defines (a label or EQU) is global, a symbol a module only uses is external and must be defined
+    // by exactly one module. The modules are placed one after the other in the order of their index: the first keeps its
+    // START address and every other one is moved up to follow the one before, its symbols and literals moving with it
+    //
+    // add() can be called from the assembly tasks as each module finishes, its definitions go straight into the global
+    // symbol index, so the index is complete when the last module is. link() then lays the modules out (a prefix sum over
+    // their sizes) and relocates and resolves them in parallel, each into its own slice of the image
+    private final Module[] modules;
+    private final ConcurrentHashMap<String, Definition> globalSymbols = new ConcurrentHashMap<>();
+    private final ConcurrentLinkedQueue<String> errors = new ConcurrentLinkedQueue<>();
+    public final AtomicInteger externalSymbols = new AtomicInteger(); // external symbols resolved, counted once per module
+
+    public Linker(int moduleCount) {
+        modules = new Module[moduleCount];
+    }
+
+    // the assembled module with this index (its place in the image), safe to call from several threads at once
+    // the module's target code is relocated in place by link()
+    public void add(int index, String name, AssemblyResult result) {
+        Module module = new Module(index, name, result.symbolTable, MachineCode.of(result));
+        for (String data : result.unlinkableData) {
+            errors.add(data + " in " + name + ", only a constant, a difference of labels or a lone symbol can be linked");
+        }
+        SymbolTable symbolTable = result.symbolTable;
+        for (int id = 1; id <= symbolTable.size(); id++) {
+            if (symbolTable.isDefined(id)) {
+                String symbol = symbolTable.getName(id);
+                if (symbolTable.getRelocation(id) == SymbolTable.NOT_RELOCATABLE) {
+                    errors.add(symbol + " in " + name + " cannot be relocated: it is computed from an external symbol or a product of addresses");
+                }
+                Definition previous = globalSymbols.putIfAbsent(symbol, new Definition(module, id));
+                if (previous != null) {
+                    Module first = previous.module.index < index ? previous.module : module;
+                    Module second = first == module ? previous.module : module;
+                    errors.add(symbol + " is defined in both " + first.name + " and " + second.name);
+                }
+            }
+        }
+        modules[index] = module;
+    }
+
+    // link the modules added for every index, the relocation runs on executor
+    // throws IllegalStateException listing every duplicate and undefined symbol
+    public ObjectImage link(ExecutorService executor) throws InterruptedException {
+        // layout
+        int origin = -1;
+        int next = -1; // address after the last module placed
+        int entryAddress = -1;
+        for (Module module : modules) {
+            if (module == null) {
+                throw new IllegalStateException("Not every module was added");
+            }
+            int lowest = module.code.lowestAddress();
+            int highest = module.code.highestAddress();
+            if (lowest > highest) {
+                continue; // no code
+            }
+            if (origin == -1) {
+                origin = lowest;
+                next = lowest;
+            }
+            module.offset = next - lowest;
+            next += highest - lowest + 1;
+            if (entryAddress == -1 && module.code.entryAddress() != -1) {
+                entryAddress = module.code.entryAddress() + module.offset;
+            }
+        }
+        if (origin == -1) {
+            return new ObjectImage(0, 0, new int[0]);
+        }
+
+        int[] words = new int[next - origin];
+        int imageOrigin = origin;
+        List<Callable<Object>> tasks = new ArrayList<>();
+        for (Module module : modules) {
+            tasks.add(() -> {
+                place(module, words, imageOrigin);
+                return null;
+            });
+        }
+        for (Future<Object> task : executor.invokeAll(tasks)) {
+            try {
+                task.get();
+            } catch (ExecutionException e) {
+                throw e.getCause() instanceof RuntimeException ? (RuntimeException) e.getCause() : new IllegalStateException(e.getCause());
+            }
+        }
+
+        if (!errors.isEmpty()) {
+            List<String> messages = new ArrayList<>(errors);
+            Collections.sort(messages);
+            throw new IllegalStateException("Link failed:\n" + String.join("\n", messages));
+        }
+        return new ObjectImage(origin, entryAddress == -1 ? origin : entryAddress, words);
+    }
+
+    // relocate the module to its place, resolve its external symbols and write its words into the image
+    private void place(Module module, int[] words, int origin) {
+        MachineCode code = module.code;
+        SymbolTable symbolTable = module.symbolTable;
+        code.relocate(module.offset, symbolTable);
+        for (int id = 1; id <= symbolTable.size(); id++) {
+            if (!symbolTable.isDefined(id)) {
+                int alias = symbolTable.getAlias(id); // B EQU X, X external: B is resolved as X
+                String symbol = symbolTable.getName(alias == 0 ? id : alias);
+                Definition definition = globalSymbols.get(symbol);
+                if (definition == null && alias != 0) {
+                    errors.add(symbolTable.getName(id) + " in " + module.name + " is an EQU of " + symbol + ", which is defined in no module");
+                } else if (definition == null) {
+                    errors.add(symbol + " is used in " + module.name + " but defined in no module");
+                } else {
+                    code.setSymbolAddress(id, definition.address());
+                    externalSymbols.incrementAndGet();
+                }
+            }
+        }
+
+        Pass2.generateUnchecked(code, new Pass2.Target() {
+            public void instruction(int address, int opcode, int register, int memoryAddress) {
+                words[address - origin] = ObjectImage.instructionWord(opcode, register, memoryAddress);
+            }
+
+            public void data(int address, int value) {
+                words[address - origin] = value;
+            }
+
+            public void reserve(int address) {
+                words[address - origin] = 0;
+            }
+        });
+    }
+
+    // where each module was placed and the final address of every global symbol, in module order (after link)
+    public void writeMap(ChannelTextWriter output) throws IOException {
+        output.append("Link Map:\n");
+        output.appendLeft("Module", 20).append(' ').appendLeft("Base", 7).append(' ').appendLeft("Length", 7).append('\n');
+        for (Module module : modules) {
+            int lowest = module.code.lowestAddress();
+            int highest = module.code.highestAddress();
+            int length = lowest > highest ? 0 : highest - lowest + 1;
+            output.appendLeft(module.name, 20).append(' ').appendLeft(length == 0 ? 0 : lowest, 7).append(' ').appendLeft(length, 7).append('\n');
+        }
+        output.append('\n');
+        output.appendLeft("Symbol", 10).append(' ').appendLeft("Module", 20).append(' ').appendLeft("Address", 7).append('\n');
+        for (Module module : modules) {
+            for (int id = 1; id <= module.symbolTable.size(); id++) {
+                if (module.symbolTable.isDefined(id)) {
+                    output.appendLeft(module.symbolTable.getName(id), 10).append(' ').appendLeft(module.name, 20).append(' ')
+                        .appendLeft(relocated(module, id), 7).append('\n');
+                }
+            }
+        }
+    }
+
+    // the address of a symbol the module defines, after the module was moved (absolute symbols keep theirs)
+    private static int relocated(Module module, int symbolId) {
+        int relocation = module.symbolTable.getRelocation(symbolId);
+        int address = module.symbolTable.getAddress(symbolId);
+        return relocation == SymbolTable.NOT_RELOCATABLE ? address : address + module.offset * relocation;
+    }
+
+    private static class Module {
+        final int index;
+        final String name;
+        final SymbolTable symbolTable;
+        final MachineCode code;
+        int offset; // how far link() moves the module
+
+        Module(int index, String name, SymbolTable symbolTable, MachineCode code) {
+            this.index = index;
+            this.name = name;
+            this.symbolTable = symbolTable;
+            this.code = code;
+        }
+    }
+
+    private static class Definition {
+        final Module module;
+        final int symbolId;
+
+        Definition(Module module, int symbolId) {
+            this.module = module;
+            this.symbolId = symbolId;
+        }
+
+        // valid once the modules are laid out
+        int address() {
+            return relocated(module, symbolId);
+        }
+    }
+}
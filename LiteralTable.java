@@ -1,53 +1,69 @@
+import java.io.IOException;
 import java.util.ArrayList;
+import java.util.HashMap;
 
 class LiteralTable {
     // (id is the serial number)
 
     public ArrayList<LiteralTableEntry> table = new ArrayList<>();
+    // literal mapped to its entry, one index per pool (pool n is at index n - 1)
+    private ArrayList<HashMap<String, LiteralTableEntry>> poolIndexes = new ArrayList<>();
+    // literals that are not yet assigned addresses (entries from currentPoolStart onwards)
+    private HashMap<String, LiteralTableEntry> currentPoolIndex = new HashMap<>();
+    private int currentPoolStart = 0;
 
-    public boolean contains(String literal) {
-        for (LiteralTableEntry entry : table) {
-            if (entry.literal.equals(literal)) {
-                return true;
-            }
+    // returns the id of the literal in the current undone pool
+    public int addToCurrentUndonePool(String literal) {
+        LiteralTableEntry entry = currentPoolIndex.get(literal);
+        if (entry == null) {
+            entry = new LiteralTableEntry(table.size() + 1, literal);
+            table.add(entry);
+            currentPoolIndex.put(literal, entry);
         }
-        return false;
+        return entry.id;
     }
 
-    public boolean containsInCurrentUndonePool(String literal, PoolTable poolTable) {
-        int indexLiteralTableSearchStart = poolTable.table.get(poolTable.table.size()).literalId + poolTable.table.get(poolTable.table.size()).poolLength;
-        int indexLiteralTableSearchEnd = table.size();
-
-        for (int i = indexLiteralTableSearchStart; i < indexLiteralTableSearchEnd; i++) {
-            if (table.get(i-1).literal.equals(literal)) {
-                return true;
-            }
+    // assign addresses to the literals in the current undone pool (after locationCounter), record the pool in the pool table
+    // and start a new pool. Returns the location counter after the last literal.
+    public int closeCurrentPool(int locationCounter, PoolTable poolTable) {
+        for (int i = currentPoolStart; i < table.size(); i++) {
+            locationCounter++;
+            table.get(i).address = locationCounter;
         }
-        return false;
+        poolTable.table.put(poolTable.table.size() + 1, new PoolTableEntry(currentPoolStart + 1, table.size() - currentPoolStart));
+
+        poolIndexes.add(currentPoolIndex);
+        currentPoolIndex = new HashMap<>();
+        currentPoolStart = table.size();
+        return locationCounter;
     }
 
-    public int getLiteralId(String literal, int currentPoolNumber, PoolTable poolTable) {
-        int literalIdFirstInPool = poolTable.table.get(currentPoolNumber).literalId;
-        int lengthCurrentPool = poolTable.table.get(currentPoolNumber).poolLength;
+    public int getLiteralId(String literal, int currentPoolNumber) {
+        HashMap<String, LiteralTableEntry> poolIndex;
+        if (currentPoolNumber <= poolIndexes.size()) {
+            poolIndex = poolIndexes.get(currentPoolNumber - 1);
+        } else {
+            poolIndex = currentPoolIndex; // the last pool was never closed (no END)
+        }
 
-        for (int i = literalIdFirstInPool - 1; i < (literalIdFirstInPool + lengthCurrentPool - 1); i++) {
-            LiteralTableEntry entry = table.get(i);
-            if (entry.literal.equals(literal)) {
-                return entry.id;
-            }
+        LiteralTableEntry entry = poolIndex.get(literal);
+        if (entry != null) {
+            return entry.id;
         }
         return -1;
     }
 
-    @Override
-    public String toString() {
-        StringBuilder buffer = new StringBuilder();
-        buffer.append("Literal Table:\n");
-        buffer.append(String.format("%-4s %-10s %-7s\n", "ID", "Literal", "Address"));
+    public void write(ChannelTextWriter output) throws IOException {
+        output.append("Literal Table:\n");
+        output.appendLeft("ID", 4).append(' ').appendLeft("Literal", 10).append(' ').appendLeft("Address", 7).append('\n');
         for (LiteralTableEntry entry : table) {
-            buffer.append(String.format("%-4d %-10s %-7d\n", entry.id, entry.literal, entry.address));
+            output.appendLeft(entry.id, 4).append(' ').appendLeft(entry.literal, 10).append(' ').appendLeft(entry.address, 7).append('\n');
         }
-        return buffer.toString();
+    }
+
+    @Override
+    public String toString() {
+        return ChannelTextWriter.render(this::write);
     }
 }
 
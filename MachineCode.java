@@ -0,0 +1,312 @@
+import java.io.IOException;
+import java.util.Arrays;
+
+class MachineCode implements MachineCodeSource {
+    // target code generated during the one-pass walk, one entry per word
+    // operands that refer to a symbol or a literal are linked into a fixup chain per symbol / literal id and are
+    // patched whenever that address is set, so the words hold the final addresses once the walk is over
+    // instructions and data of a statement take the address of the statement, which is filled in by resolveAddresses
+    public static final byte INSTRUCTION = 0;
+    public static final byte DATA = 1;
+    public static final byte RESERVE = 2;
+
+    private byte[] kinds;
+    private int[] statements; // statement whose address the word gets, -1 if the word has its own address
+    private int[] addresses;
+    private int[] opcodes;
+    private int[] registers;
+    private int[] operands; // memory address of an instruction, value of data
+    private int size = 0;
+
+    // fixup chains, a head is the index of the last word linked into the chain and nextFixup leads to the one before it (-1 ends)
+    private int[] nextFixup;
+    private int[] symbolFixups = new int[64]; // by symbol id
+    private int[] literalFixups = new int[64]; // by literal id
+
+    private int ltorgOpcode = -1;
+    private int endOpcode = -1;
+    private int dcOpcode = -1;
+    private int poolNumber = 1; // pool placed by the next LTORG / END statement
+
+    public MachineCode() {
+        this(256);
+    }
+
+    // wordCapacity is only a first size (e.g. the number of source lines), the arrays grow as needed
+    public MachineCode(int wordCapacity) {
+        wordCapacity = Math.max(1, wordCapacity);
+        kinds = new byte[wordCapacity];
+        statements = new int[wordCapacity];
+        addresses = new int[wordCapacity];
+        opcodes = new int[wordCapacity];
+        registers = new int[wordCapacity];
+        operands = new int[wordCapacity];
+        nextFixup = new int[wordCapacity];
+        Arrays.fill(symbolFixups, -1);
+        Arrays.fill(literalFixups, -1);
+        MachineOpcodeTableEntry ltorg = MachineOpcodeTable.get("ltorg");
+        MachineOpcodeTableEntry end = MachineOpcodeTable.get("end");
+        MachineOpcodeTableEntry dc = MachineOpcodeTable.get("dc");
+        if (ltorg != null) ltorgOpcode = ltorg.opcode;
+        if (end != null) endOpcode = end.opcode;
+        if (dc != null) dcOpcode = dc.opcode;
+    }
+
+    // the target code of a finished assembly with its fixup chains, e.g. for the linker (result.machineCode if it has one)
+    public static MachineCode of(AssemblyResult result) {
+        if (result.machineCode != null) {
+            return result.machineCode;
+        }
+        IntermediateCode intermediateCode = result.intermediateCode;
+        MachineCode machineCode = new MachineCode(intermediateCode.statementCount);
+        for (int statement = 0; statement < intermediateCode.statementCount; statement++) {
+            machineCode.addStatement(intermediateCode, statement, result.symbolTable, result.literalTable, result.poolTable);
+        }
+        machineCode.resolveAddresses(intermediateCode);
+        return machineCode;
+    }
+
+    // the words Pass2 generates for a finished statement of the intermediate code, with the addresses known so far
+    public void addStatement(IntermediateCode intermediateCode, int statement, SymbolTable symbolTable, LiteralTable literalTable, PoolTable poolTable) {
+        byte[] itemKinds = intermediateCode.kinds;
+        int[] values = intermediateCode.values;
+        int start = intermediateCode.statementStarts[statement];
+        int end = intermediateCode.statementEnd(statement);
+        if (start == end) {
+            return; // a line with only a label
+        }
+        int opcode = values[start];
+
+        switch (itemKinds[start]) {
+            case IntermediateCode.IS: {
+                int register = 0;
+                int operand = -1; // the item that gives the memory address, the last one wins as in Pass2
+                for (int i = start + 1; i < end; i++) {
+                    if (itemKinds[i] == IntermediateCode.RG || itemKinds[i] == IntermediateCode.CC) {
+                        register = values[i];
+                    } else if (itemKinds[i] == IntermediateCode.SYMBOL || itemKinds[i] == IntermediateCode.LITERAL || itemKinds[i] == IntermediateCode.CONSTANT) {
+                        operand = i;
+                    }
+                }
+                int word = instruction(statement, opcode, register, 0);
+                if (operand != -1) {
+                    if (itemKinds[operand] == IntermediateCode.SYMBOL) {
+                        referenceSymbol(word, values[operand], symbolTable.getAddress(values[operand]));
+                    } else if (itemKinds[operand] == IntermediateCode.LITERAL) {
+                        referenceLiteral(word, values[operand], literalTable.table.get(values[operand] - 1).address);
+                    } else {
+                        operands[word] = values[operand];
+                    }
+                }
+                break;
+            }
+            case IntermediateCode.DL:
+                if (opcode == dcOpcode && start + 1 < end && itemKinds[start + 1] == IntermediateCode.SYMBOL) {
+                    // DC of a symbol: the data word holds its address, patched and relocated like an instruction's operand
+                    referenceSymbol(data(statement, 0), values[start + 1], symbolTable.getAddress(values[start + 1]));
+                } else if (opcode == dcOpcode) {
+                    data(statement, start + 1 < end ? values[start + 1] : 0);
+                } else {
+                    reserve(statement);
+                }
+                break;
+            case IntermediateCode.AD:
+                // the literals of the pool are placed after ltorg and end, their addresses are already assigned
+                if (opcode == ltorgOpcode || opcode == endOpcode) {
+                    PoolTableEntry pool = poolTable.table.get(poolNumber);
+                    if (pool != null) {
+                        for (int id = pool.literalId; id < pool.literalId + pool.poolLength; id++) {
+                            LiteralTableEntry literal = literalTable.table.get(id - 1);
+                            literalData(literal.address, Pass2.literalValue(literal.literal));
+                        }
+                    }
+                    poolNumber++;
+                }
+                break;
+            default:
+                break;
+        }
+    }
+
+    public int instruction(int statement, int opcode, int register, int memoryAddress) {
+        return add(INSTRUCTION, statement, 0, opcode, register, memoryAddress);
+    }
+
+    public int data(int statement, int value) {
+        return add(DATA, statement, 0, 0, 0, value);
+    }
+
+    // the value of a data word that was only known after its statement was added
+    public void setData(int word, int value) {
+        operands[word] = value;
+    }
+
+    // number of words, the index the next one gets
+    public int size() {
+        return size;
+    }
+
+    public void literalData(int address, int value) {
+        add(DATA, -1, address, 0, 0, value);
+    }
+
+    public void reserve(int statement) {
+        add(RESERVE, statement, 0, 0, 0, 0);
+    }
+
+    // the operand of word is the symbol's address, now and after every later change of it
+    public void referenceSymbol(int word, int symbolId, int currentAddress) {
+        symbolFixups = ensureChainCapacity(symbolFixups, symbolId);
+        operands[word] = currentAddress;
+        nextFixup[word] = symbolFixups[symbolId];
+        symbolFixups[symbolId] = word;
+    }
+
+    public void referenceLiteral(int word, int literalId, int currentAddress) {
+        literalFixups = ensureChainCapacity(literalFixups, literalId);
+        operands[word] = currentAddress;
+        nextFixup[word] = literalFixups[literalId];
+        literalFixups[literalId] = word;
+    }
+
+    // a label, DS or EQU gave the symbol this address
+    public void setSymbolAddress(int symbolId, int address) {
+        if (symbolId < symbolFixups.length) {
+            patch(symbolFixups[symbolId], address);
+        }
+    }
+
+    // LTORG or END placed the literal at this address
+    public void setLiteralAddress(int literalId, int address) {
+        if (literalId < literalFixups.length) {
+            patch(literalFixups[literalId], address);
+        }
+    }
+
+    // statement addresses are only final at the end of their line, so the words take them over after the walk
+    public void resolveAddresses(IntermediateCode intermediateCode) {
+        for (int word = 0; word < size; word++) {
+            if (statements[word] >= 0) {
+                addresses[word] = intermediateCode.statementAddresses[statements[word]];
+            }
+        }
+    }
+
+    // lowest and highest address of the words (lowest > highest if there are none)
+    public int lowestAddress() {
+        int lowest = Integer.MAX_VALUE;
+        for (int word = 0; word < size; word++) {
+            lowest = Math.min(lowest, addresses[word]);
+        }
+        return lowest;
+    }
+
+    public int highestAddress() {
+        int highest = Integer.MIN_VALUE;
+        for (int word = 0; word < size; word++) {
+            highest = Math.max(highest, addresses[word]);
+        }
+        return highest;
+    }
+
+    // address of the first instruction, -1 if there is none
+    public int entryAddress() {
+        for (int word = 0; word < size; word++) {
+            if (kinds[word] == INSTRUCTION) {
+                return addresses[word];
+            }
+        }
+        return -1;
+    }
+
+    // move the code offset addresses up (in place): the address of every word, and every operand that refers to a literal or
+    // to a relocatable symbol the module defines (by its relocation, so absolute symbols stay). The operands of external
+    // symbols are left to setSymbolAddress
+    public void relocate(int offset, SymbolTable symbolTable) {
+        requirePlacedLiterals();
+        for (int word = 0; word < size; word++) {
+            addresses[word] += offset;
+        }
+        for (int id = 1; id < symbolFixups.length && id <= symbolTable.size(); id++) {
+            int relocation = symbolTable.getRelocation(id);
+            if (symbolTable.isDefined(id) && relocation != 0 && relocation != SymbolTable.NOT_RELOCATABLE) {
+                shift(symbolFixups[id], offset * relocation);
+            }
+        }
+        for (int id = 1; id < literalFixups.length; id++) {
+            shift(literalFixups[id], offset);
+        }
+    }
+
+    @Override
+    public void generate(Pass2.Target target) throws IOException {
+        requirePlacedLiterals();
+        for (int word = 0; word < size; word++) {
+            switch (kinds[word]) {
+                case INSTRUCTION:
+                    target.instruction(addresses[word], opcodes[word], registers[word], operands[word]);
+                    break;
+                case DATA:
+                    target.data(addresses[word], operands[word]);
+                    break;
+                default:
+                    target.reserve(addresses[word]);
+                    break;
+            }
+        }
+    }
+
+    // a literal that no LTORG or END placed still has the address -1, like Pass2 this refuses to generate the words using it
+    private void requirePlacedLiterals() {
+        for (int id = 1; id < literalFixups.length; id++) {
+            for (int word = literalFixups[id]; word != -1; word = nextFixup[word]) {
+                if (operands[word] == -1) {
+                    throw new IllegalStateException("Address " + addresses[word] + ": literal " + id + " has no address, no LTORG or END follows it");
+                }
+            }
+        }
+    }
+
+    private void patch(int word, int address) {
+        for (; word != -1; word = nextFixup[word]) {
+            operands[word] = address;
+        }
+    }
+
+    private void shift(int word, int offset) {
+        for (; word != -1; word = nextFixup[word]) {
+            operands[word] += offset;
+        }
+    }
+
+    private int add(byte kind, int statement, int address, int opcode, int register, int operand) {
+        if (size == kinds.length) {
+            int capacity = size * 2;
+            kinds = Arrays.copyOf(kinds, capacity);
+            statements = Arrays.copyOf(statements, capacity);
+            addresses = Arrays.copyOf(addresses, capacity);
+            opcodes = Arrays.copyOf(opcodes, capacity);
+            registers = Arrays.copyOf(registers, capacity);
+            operands = Arrays.copyOf(operands, capacity);
+            nextFixup = Arrays.copyOf(nextFixup, capacity);
+        }
+        kinds[size] = kind;
+        statements[size] = statement;
+        addresses[size] = address;
+        opcodes[size] = opcode;
+        registers[size] = register;
+        operands[size] = operand;
+        nextFixup[size] = -1;
+        return size++;
+    }
+
+    private static int[] ensureChainCapacity(int[] heads, int id) {
+        if (id < heads.length) {
+            return heads;
+        }
+        int oldLength = heads.length;
+        int[] grown = Arrays.copyOf(heads, Math.max(oldLength * 2, id + 1));
+        Arrays.fill(grown, oldLength, grown.length, -1);
+        return grown;
+    }
+}
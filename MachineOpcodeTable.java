@@ -1,4 +1,10 @@
-import java.util.HashMap;
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Locale;
 
 class MachineOpcodeTable {
     /*
@@ -8,37 +14,164 @@ class MachineOpcodeTable {
         RG - register
         CC - condition code
     */
-    public static HashMap<String, MachineOpcodeTableEntry> table = new HashMap<>(29);
+    public static final String TABLE_FILE_PROPERTY = "opcode.table";
+    public static final String DEFAULT_TABLE_FILE = "opcode_table.txt";
+
+    // entries in the order they were defined
+    public static final ArrayList<MachineOpcodeTableEntry> entries = new ArrayList<>();
+
+    // open addressing table over the lower case mnemonics, so a word can be looked up
+    // case-insensitively without making a lower case copy of it
+    private static char[][] keys = new char[64][];
+    private static MachineOpcodeTableEntry[] values = new MachineOpcodeTableEntry[64];
 
     static {
-        table.put("stop", new MachineOpcodeTableEntry("IS", 0));
-        table.put("add", new MachineOpcodeTableEntry("IS", 1));
-        table.put("sub", new MachineOpcodeTableEntry("IS", 2));
-        table.put("mult", new MachineOpcodeTableEntry("IS", 3));
-        table.put("mover", new MachineOpcodeTableEntry("IS", 4));
-        table.put("movem", new MachineOpcodeTableEntry("IS", 5));
-        table.put("comp", new MachineOpcodeTableEntry("IS", 6));
-        table.put("bc", new MachineOpcodeTableEntry("IS", 7));
-        table.put("div", new MachineOpcodeTableEntry("IS", 8));
-        table.put("read", new MachineOpcodeTableEntry("IS", 9));
-        table.put("print", new MachineOpcodeTableEntry("IS", 10));
-        table.put("load", new MachineOpcodeTableEntry("IS", 11));
-        table.put("start", new MachineOpcodeTableEntry("AD", 1));
-        table.put("end", new MachineOpcodeTableEntry("AD", 2));
-        table.put("origin", new MachineOpcodeTableEntry("AD", 3));
-        table.put("equ", new MachineOpcodeTableEntry("AD", 4));
-        table.put("ltorg", new MachineOpcodeTableEntry("AD", 5));
-        table.put("ds", new MachineOpcodeTableEntry("DL", 1));
-        table.put("dc", new MachineOpcodeTableEntry("DL", 2));
-        table.put("areg", new MachineOpcodeTableEntry("RG", 1));
-        table.put("breg", new MachineOpcodeTableEntry("RG", 2));
-        table.put("creg", new MachineOpcodeTableEntry("RG", 3));
-        table.put("dreg", new MachineOpcodeTableEntry("RG", 4));
-        table.put("eq", new MachineOpcodeTableEntry("CC", 1));
-        table.put("lt", new MachineOpcodeTableEntry("CC", 2));
-        table.put("gt", new MachineOpcodeTableEntry("CC", 3));
-        table.put("le", new MachineOpcodeTableEntry("CC", 4));
-        table.put("ge", new MachineOpcodeTableEntry("CC", 5));
-        table.put("any", new MachineOpcodeTableEntry("CC", 6));
+        // the table is read from the opcode.table system property or opcode_table.txt in the working
+        // directory, so the instruction set can be extended without changing the code
+        String tableFileName = System.getProperty(TABLE_FILE_PROPERTY);
+        if (tableFileName == null && new File(DEFAULT_TABLE_FILE).isFile()) {
+            tableFileName = DEFAULT_TABLE_FILE;
+        }
+
+        if (tableFileName != null) {
+            try {
+                load(tableFileName);
+            } catch (IOException e) {
+                throw new UncheckedIOException("Cannot read the machine opcode table " + tableFileName, e);
+            }
+        } else {
+            put("stop", InstructionClass.IS, 0);
+            put("add", InstructionClass.IS, 1);
+            put("sub", InstructionClass.IS, 2);
+            put("mult", InstructionClass.IS, 3);
+            put("mover", InstructionClass.IS, 4);
+            put("movem", InstructionClass.IS, 5);
+            put("comp", InstructionClass.IS, 6);
+            put("bc", InstructionClass.IS, 7);
+            put("div", InstructionClass.IS, 8);
+            put("read", InstructionClass.IS, 9);
+            put("print", InstructionClass.IS, 10);
+            put("load", InstructionClass.IS, 11);
+            put("start", InstructionClass.AD, 1);
+            put("end", InstructionClass.AD, 2);
+            put("origin", InstructionClass.AD, 3);
+            put("equ", InstructionClass.AD, 4);
+            put("ltorg", InstructionClass.AD, 5);
+            put("include", InstructionClass.AD, 6);
+            put("ds", InstructionClass.DL, 1);
+            put("dc", InstructionClass.DL, 2);
+            put("areg", InstructionClass.RG, 1);
+            put("breg", InstructionClass.RG, 2);
+            put("creg", InstructionClass.RG, 3);
+            put("dreg", InstructionClass.RG, 4);
+            put("eq", InstructionClass.CC, 1);
+            put("lt", InstructionClass.CC, 2);
+            put("gt", InstructionClass.CC, 3);
+            put("le", InstructionClass.CC, 4);
+            put("ge", InstructionClass.CC, 5);
+            put("any", InstructionClass.CC, 6);
+        }
+    }
+
+    // look up a word in any letter case, returns null if it is not a mnemonic
+    public static MachineOpcodeTableEntry get(CharSequence word) {
+        int length = word.length();
+        int mask = keys.length - 1;
+        int slot = hash(word) & mask;
+        char[] key;
+
+        while ((key = keys[slot]) != null) {
+            if (key.length == length && equalsIgnoreCase(key, word)) {
+                return values[slot];
+            }
+            slot = (slot + 1) & mask;
+        }
+        return null;
+    }
+
+    // one mnemonic per line: <mnemonic> <class> <opcode>, lines starting with # are comments
+    private static void load(String tableFileName) throws IOException {
+        try (BufferedReader reader = new BufferedReader(new FileReader(tableFileName))) {
+            String line;
+            int lineNumber = 0;
+            while ((line = reader.readLine()) != null) {
+                lineNumber++;
+                line = line.strip();
+                if (line.isEmpty() || line.startsWith("#")) {
+                    continue;
+                }
+
+                String[] fields = line.split("\\s+");
+                if (fields.length != 3) {
+                    throw new IOException(tableFileName + ":" + lineNumber + ": expected <mnemonic> <class> <opcode>");
+                }
+                try {
+                    put(fields[0], InstructionClass.valueOf(fields[1].toUpperCase(Locale.ROOT)), Integer.parseInt(fields[2]));
+                } catch (IllegalArgumentException e) {
+                    throw new IOException(tableFileName + ":" + lineNumber + ": " + e.getMessage());
+                }
+            }
+        }
+    }
+
+    private static void put(String mnemonic, InstructionClass instructionClass, int opcode) {
+        mnemonic = mnemonic.toLowerCase(Locale.ROOT); // not the default locale, in which I may not lower to i
+        if (get(mnemonic) != null) {
+            throw new IllegalArgumentException("duplicate mnemonic " + mnemonic);
+        }
+        if ((entries.size() + 1) * 2 > keys.length) {
+            grow();
+        }
+
+        MachineOpcodeTableEntry entry = new MachineOpcodeTableEntry(mnemonic, instructionClass, opcode);
+        entries.add(entry);
+        insert(mnemonic.toCharArray(), entry);
+    }
+
+    private static void insert(char[] key, MachineOpcodeTableEntry entry) {
+        int mask = keys.length - 1;
+        int slot = hash(new String(key)) & mask;
+        while (keys[slot] != null) {
+            slot = (slot + 1) & mask;
+        }
+        keys[slot] = key;
+        values[slot] = entry;
+    }
+
+    private static void grow() {
+        char[][] oldKeys = keys;
+        MachineOpcodeTableEntry[] oldValues = values;
+        keys = new char[oldKeys.length * 2][];
+        values = new MachineOpcodeTableEntry[oldKeys.length * 2];
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldKeys[i] != null) {
+                insert(oldKeys[i], oldValues[i]);
+            }
+        }
+    }
+
+    private static int hash(CharSequence word) {
+        int hash = word.length();
+        for (int i = 0; i < word.length(); i++) {
+            hash = 31 * hash + toLowerCase(word.charAt(i));
+        }
+        return hash ^ (hash >>> 16);
+    }
+
+    private static boolean equalsIgnoreCase(char[] lowerCaseKey, CharSequence word) {
+        for (int i = 0; i < lowerCaseKey.length; i++) {
+            if (lowerCaseKey[i] != toLowerCase(word.charAt(i))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // as toLowerCase(Locale.ROOT) does it for one char, so that lookups fold a word the same way as put
+    private static char toLowerCase(char c) {
+        if (c < 0x80) {
+            return (c >= 'A' && c <= 'Z') ? (char) (c + ('a' - 'A')) : c;
+        }
+        return Character.toLowerCase(c);
     }
 }
@@ -1,9 +1,13 @@
 class MachineOpcodeTableEntry {
-    String instructionClass;
+    String mnemonic; // lower case
+    InstructionClass instructionClass;
     int opcode;
+    Directive directive;
 
-    public MachineOpcodeTableEntry(String instructionClass, int opcode) {
+    public MachineOpcodeTableEntry(String mnemonic, InstructionClass instructionClass, int opcode) {
+        this.mnemonic = mnemonic;
         this.instructionClass = instructionClass;
         this.opcode = opcode;
+        this.directive = Directive.forMnemonic(mnemonic);
     }
-}
\ No newline at end of file
+}
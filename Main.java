@@ -1,5 +1,576 @@
+import java.io.BufferedOutputStream;
+import java.io.BufferedInputStream;
+import java.io.BufferedWriter;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.file.FileSystems;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
 public class Main {
     public static void main(String[] args) {
-        Assembler.performPass1("input/assembly_code.asm");
+        if (args.length == 0) {
+            Assembler.performPass1("input/assembly_code.asm");
+            return;
+        }
+
+        try {
+            switch (args[0]) {
+                case "batch":
+                    batch(args);
+                    break;
+                case "watch":
+                    watch(args);
+                    break;
+                case "pass1":
+                    pass1(args);
+                    break;
+                case "pass2":
+                    // pass2 <pass 1 output directory> <machine code file>: pass 2 over the text files written by pass 1
+                    CommandOptions options = new CommandOptions(args, "pass2 <pass 1 output directory> <machine code file>", 2, 2);
+                    writeMachineCode(new Pass2(PassOneTextReader.read(options.operand(0))), options.operand(1));
+                    break;
+                case "assemble":
+                    assemble(args);
+                    break;
+                case "link":
+                    link(args);
+                    break;
+                case "run":
+                    run(args);
+                    break;
+                case "daemon":
+                    daemon(args);
+                    break;
+                case "client":
+                    client(args);
+                    break;
+                default:
+                    System.err.println("Unknown command: " + args[0]);
+                    System.exit(2);
+            }
+        } catch (UsageException e) {
+            if (e.getMessage() != null) {
+                System.err.println(e.getMessage());
+            }
+            usageError(e.usage);
+        } catch (IOException | RuntimeException e) {
+            // one line like the other errors, e.g. a missing input file or a statement pass 2 cannot encode
+            System.err.println(args[0] + " failed: " + e);
+            System.exit(1);
+        }
     }
-}
\ No newline at end of file
+
+    // batch [--binary-ic] [--outputs <list>] [--metrics] [--cache <cache directory>] <input directory> <output directory> [threads]
+    private static void batch(String[] args) {
+        CommandOptions options = new CommandOptions(args, "batch [--binary-ic] [--outputs <list>] [--metrics] [--cache <cache directory>] <input directory> <output directory> [threads]",
+            2, 3, "--binary-ic", "--outputs <list>", "--metrics", "--cache <cache directory>");
+        EnumSet<Artifact> artifacts = options.artifacts();
+        if (options.has("--binary-ic")) {
+            artifacts.add(Artifact.BINARY_INTERMEDIATE_CODE);
+        }
+        AssemblyCache cache = options.has("--cache") ? new AssemblyCache(new File(options.value("--cache", null))) : null;
+        int threads = options.operandCount() > 2 ? options.intOperand(2) : 0;
+        int failures = assembleDirectory(options.operand(0), options.operand(1), threads, artifacts, options.has("--metrics"), cache, null);
+        if (cache != null) {
+            System.out.println("Cache: " + cache.hits.get() + " hits, " + cache.misses.get() + " misses");
+        }
+        if (IncludeCache.shared.misses.get() > 0) {
+            System.out.println("Include cache: " + IncludeCache.shared.hits.get() + " hits, " + IncludeCache.shared.misses.get() + " misses");
+        }
+        System.exit(failures == 0 ? 0 : 1);
+    }
+
+    // watch <input directory> <output directory>: assemble the directory, then assemble each .asm file again whenever it or a
+    // header it includes changes (the directories of the headers are watched too, see WatchedIncludes)
+    // results are cached in <output directory>/.cache, so files that come back to an earlier content are not assembled again
+    private static void watch(String[] args) throws IOException {
+        CommandOptions options = new CommandOptions(args, "watch <input directory> <output directory>", 2, 2);
+        Path inputDirectory = Path.of(options.operand(0)).toRealPath();
+        String outputDirectory = options.operand(1);
+        AssemblyCache cache = new AssemblyCache(new File(outputDirectory, ".cache"));
+        HashMap<String, AssemblyResult> results = new HashMap<>();
+        assembleDirectory(inputDirectory.toString(), outputDirectory, 0, Artifact.defaults(), false, cache, results);
+
+        try (WatchService watchService = FileSystems.getDefault().newWatchService()) {
+            WatchedIncludes includes = new WatchedIncludes(watchService);
+            includes.watch(inputDirectory);
+            for (String fileName : results.keySet()) {
+                includes.record(fileName, results.get(fileName));
+            }
+            System.out.println("Watching " + inputDirectory + " for changes");
+            while (true) {
+                WatchKey key = watchService.take();
+                Path directory = (Path) key.watchable();
+                // an editor often writes a file in several steps, so every file is assembled once per batch of events
+                TreeSet<String> changedFiles = new TreeSet<>();
+                for (WatchEvent<?> event : key.pollEvents()) {
+                    Object context = event.context();
+                    if (!(context instanceof Path)) {
+                        continue; // events were lost
+                    }
+                    if (directory.equals(inputDirectory) && context.toString().endsWith(".asm")) {
+                        changedFiles.add(context.toString());
+                    }
+                    changedFiles.addAll(includes.includers(directory.resolve((Path) context)));
+                }
+                key.reset();
+
+                for (String fileName : changedFiles) {
+                    String moduleName = fileName.substring(0, fileName.length() - ".asm".length());
+                    long start = System.nanoTime();
+                    try {
+                        ArtifactWriter writer = new ArtifactWriter(new File(outputDirectory, moduleName).getPath(), Artifact.defaults());
+                        AssemblyResult result = cache.assemble(inputDirectory.resolve(fileName).toString(), writer);
+                        writer.await();
+                        includes.record(fileName, result);
+                        System.out.printf("Assembled %s in %.1f ms%n", fileName, (System.nanoTime() - start) / 1e6);
+                    } catch (IOException | RuntimeException e) {
+                        System.err.println("Failed to assemble " + fileName + ": " + e);
+                    }
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    // pass1 [--outputs <list>] [--metrics] [--one-pass] <input .asm file> <output directory>
+    private static void pass1(String[] args) throws IOException {
+        CommandOptions options = new CommandOptions(args, "pass1 [--outputs <list>] [--metrics] [--one-pass] <input .asm file> <output directory>",
+            2, 2, "--outputs <list>", "--metrics", "--one-pass");
+        Assembler assembler = new Assembler(options.operand(0));
+        ArtifactWriter writer = new ArtifactWriter(options.operand(1), options.artifacts());
+        AssemblyResult result = options.has("--one-pass") ? assembler.assembleOnePass(writer) : assembler.assemble(writer);
+        writer.await();
+        if (options.has("--metrics")) {
+            result.writeMetrics(options.operand(1));
+        }
+    }
+
+    // assemble [--object] [--outputs <list>] [--metrics] [--one-pass] <input .asm file> <output directory>: both passes in one process, the tables are
+    // handed to pass 2 in memory. With --one-pass, the target code is generated in the same walk as the tables (same output,
+    // only slightly faster, see the README)
+    private static void assemble(String[] args) throws IOException {
+        CommandOptions options = assembleOptions(args, 1);
+        assembleFile(options.operand(0), options.operand(1), options.artifacts(), options.has("--object"), options.has("--metrics"),
+            options.has("--one-pass"));
+    }
+
+    // the options and operands of assemble, from args[first] on (the daemon's requests carry them as well)
+    public static CommandOptions assembleOptions(String[] args, int first) {
+        return new CommandOptions(args, first, "assemble [--object] [--outputs <list>] [--metrics] [--one-pass] <input .asm file> <output directory>",
+            2, 2, "--object", "--outputs <list>", "--metrics", "--one-pass");
+    }
+
+    // what the assemble command does for one file, also used by the daemon for each request
+    // the selected pass 1 files are written in the background while pass 2 runs, metrics.json once they are all done
+    public static void assembleFile(String inputAsmFileName, String outputDirectory, EnumSet<Artifact> artifacts, boolean writeObjectImage, boolean writeMetrics,
+            boolean isOnePass) throws IOException {
+        Assembler assembler = new Assembler(inputAsmFileName);
+        ArtifactWriter writer = new ArtifactWriter(outputDirectory, artifacts);
+        AssemblyResult result = isOnePass ? assembler.assembleOnePass(writer) : assembler.assemble(writer);
+        MachineCodeSource machineCode = result.machineCode != null ? result.machineCode : new Pass2(result);
+        writeMachineCode(machineCode, new File(outputDirectory, "machine_code.txt").getPath());
+        if (writeObjectImage) {
+            try (DataOutputStream output = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(new File(outputDirectory, "machine_code.obj"))))) {
+                Pass2.buildObjectImage(machineCode).write(output);
+            }
+        }
+        writer.await();
+        if (writeMetrics) {
+            result.writeMetrics(outputDirectory);
+        }
+    }
+
+    // link [--threads <n>] [--map <map file>] <output .obj file> <input .asm files or directories ...>: assemble the modules in
+    // parallel and link them into one object image, placed in the order of their names (see Linker)
+    private static void link(String[] args) throws IOException {
+        CommandOptions options = new CommandOptions(args, "link [--threads <n>] [--map <map file>] <output .obj file> <input .asm files or directories ...>",
+            2, Integer.MAX_VALUE, "--threads <n>", "--map <map file>");
+        int threads = options.intValue("--threads", 0);
+        String mapFileName = options.value("--map", null);
+        String outputFileName = options.operand(0);
+        ArrayList<File> inputFiles = new ArrayList<>();
+        for (int i = 1; i < options.operandCount(); i++) {
+            File file = new File(options.operand(i));
+            File[] files = file.isDirectory() ? file.listFiles((dir, name) -> name.endsWith(".asm")) : new File[] {file};
+            if (files != null) {
+                Arrays.sort(files);
+                inputFiles.addAll(Arrays.asList(files));
+            }
+        }
+
+        long start = System.nanoTime();
+        Linker linker = new Linker(inputFiles.size());
+        ExecutorService executor = newExecutor(threads);
+        ArrayList<Future<?>> results = new ArrayList<>();
+        for (int i = 0; i < inputFiles.size(); i++) {
+            int moduleIndex = i;
+            File inputFile = inputFiles.get(i);
+            String moduleName = inputFile.getName().endsWith(".asm") ? inputFile.getName().substring(0, inputFile.getName().length() - ".asm".length()) : inputFile.getName();
+            results.add(executor.submit(() -> {
+                linker.add(moduleIndex, moduleName, new Assembler(inputFile.getPath()).assemble());
+                return null;
+            }));
+        }
+        int failures = 0;
+        try {
+            for (int i = 0; i < results.size(); i++) {
+                try {
+                    results.get(i).get();
+                } catch (ExecutionException e) {
+                    failures++;
+                    System.err.println("Failed to assemble " + inputFiles.get(i) + ": " + e.getCause());
+                }
+            }
+            if (failures > 0) {
+                executor.shutdown();
+                System.exit(1);
+            }
+
+            ObjectImage image = linker.link(executor);
+            try (DataOutputStream output = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(outputFileName)))) {
+                image.write(output);
+            }
+            if (mapFileName != null) {
+                try (ChannelTextWriter output = ChannelTextWriter.open(new File(mapFileName))) {
+                    linker.writeMap(output);
+                }
+            }
+            System.out.printf("Linked %d modules into %d words (origin %d, entry %d), %d external symbols resolved in %.1f ms%n",
+                inputFiles.size(), image.words.length, image.origin, image.entryAddress, linker.externalSymbols.get(), (System.nanoTime() - start) / 1e6);
+        } catch (IllegalStateException e) {
+            System.err.println(e.getMessage());
+            System.exit(1);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    // run [--steps <n>] [--input <v,v,...>] [--symbols] <input .asm or .obj file>: assemble the program (or read the object
+    // image) and execute it in the Simulator, printing what PRINT writes and the instructions per second
+    private static void run(String[] args) throws IOException {
+        CommandOptions options = new CommandOptions(args, "run [--steps <n>] [--input <v,v,...>] [--symbols] <input .asm or .obj file>",
+            1, 1, "--steps <n>", "--input <v,v,...>", "--symbols");
+        long stepLimit = options.longValue("--steps", Simulator.DEFAULT_STEP_LIMIT);
+        int[] input = options.intListValue("--input");
+        boolean printSymbols = options.has("--symbols");
+        String inputFileName = options.operand(0);
+
+        Simulator simulator = new Simulator();
+        AssemblyResult result = null;
+        try {
+            if (inputFileName.endsWith(".obj")) {
+                try (DataInputStream objectInput = new DataInputStream(new BufferedInputStream(new FileInputStream(inputFileName)))) {
+                    simulator.load(ObjectImage.read(objectInput));
+                }
+            } else {
+                result = new Assembler(inputFileName).assemble();
+                simulator.load(result);
+            }
+        } catch (RuntimeException e) {
+            // e.g. a literal without LTORG or END after it, or an operand that does not fit in an instruction word
+            System.err.println("Cannot run " + inputFileName + ": " + e.getMessage());
+            System.exit(1);
+        }
+        simulator.setInput(input);
+        long start = System.nanoTime();
+        boolean isStopped = simulator.run(stepLimit);
+        long nanos = System.nanoTime() - start;
+
+        for (int value : simulator.output()) {
+            System.out.println(value);
+        }
+        if (printSymbols && result != null) {
+            for (int id = 1; id <= result.symbolTable.size(); id++) {
+                int address = result.symbolTable.getAddress(id);
+                if (simulator.isInProgram(address)) {
+                    System.out.println(result.symbolTable.getName(id) + " = " + simulator.memory(address));
+                }
+            }
+        }
+        if (simulator.fault != null) {
+            System.err.println("Fault after " + simulator.steps + " instructions: " + simulator.fault);
+            System.exit(1);
+        }
+        System.out.printf("%s after %d instructions in %.1f ms (%.0f instructions/s)%n", isStopped ? "Stopped" : "Step limit reached",
+            simulator.steps, nanos / 1e6, simulator.steps / Math.max(1e-9, nanos / 1e9));
+    }
+
+    // daemon [--socket <socket file>] [--threads <n>] [--warmup <lines>]: assemble requests (see AssemblerDaemon) until shutdown,
+    // read from the Unix domain socket or, without --socket, from stdin with the replies on stdout
+    private static void daemon(String[] args) throws IOException {
+        CommandOptions options = new CommandOptions(args, "daemon [--socket <socket file>] [--threads <n>] [--warmup <lines>]",
+            0, 0, "--socket <socket file>", "--threads <n>", "--warmup <lines>");
+        String socketFileName = options.value("--socket", null);
+        AssemblerDaemon daemon = new AssemblerDaemon(options.intValue("--threads", Runtime.getRuntime().availableProcessors()));
+        daemon.warmUp(options.intValue("--warmup", AssemblerDaemon.DEFAULT_WARMUP_LINES));
+        if (socketFileName != null) {
+            daemon.serve(Path.of(socketFileName));
+        } else {
+            daemon.serve(System.in, System.out);
+        }
+    }
+
+    // client --socket <socket file> <request ...>: send one request to a running daemon and print its reply
+    // e.g. client --socket asm.sock assemble --object prog.asm out, client --socket asm.sock stats
+    private static void client(String[] args) throws IOException {
+        String usage = "client --socket <socket file> assemble [--object] [--outputs <list>] [--metrics] [--one-pass] <input .asm file> <output directory> | stats | shutdown";
+        if (args.length < 4 || !args[1].equals("--socket")) {
+            usageError(usage);
+        }
+        String reply = AssemblerDaemon.send(Path.of(args[2]), Arrays.copyOfRange(args, 3, args.length));
+        System.out.println(reply);
+        System.exit(reply.startsWith("error") ? 1 : 0);
+    }
+
+    private static void writeMachineCode(MachineCodeSource machineCode, String fileName) throws IOException {
+        try (Writer output = new BufferedWriter(new FileWriter(fileName), 1 << 16)) {
+            Pass2.writeMachineCode(machineCode, output);
+        }
+    }
+
+    private static void usageError(String usage) {
+        System.err.println("Usage: java Main " + usage);
+        System.exit(2);
+    }
+
+    // assemble every .asm file of inputDirectory in parallel, the output of module x.asm goes into outputDirectory/x
+    // threads <= 0 uses virtual threads when the JVM has them, otherwise one platform thread per core
+    // results are taken from the cache when one is given, only the selected artifacts are written, and writeMetrics adds
+    // metrics.json to each module's output. The result of each module that was assembled is put into results by its file
+    // name, when results is not null. Returns the number of modules that failed
+    public static int assembleDirectory(String inputDirectory, String outputDirectory, int threads, EnumSet<Artifact> artifacts, boolean writeMetrics,
+            AssemblyCache cache, Map<String, AssemblyResult> results) {
+        File[] inputFiles = new File(inputDirectory).listFiles((dir, name) -> name.endsWith(".asm"));
+        if (inputFiles == null) {
+            System.err.println("Not a directory: " + inputDirectory);
+            return 1;
+        }
+        Arrays.sort(inputFiles);
+
+        ExecutorService executor = newExecutor(threads);
+        ArrayList<Future<AssemblyResult>> modules = new ArrayList<>();
+        for (File inputFile : inputFiles) {
+            String moduleName = inputFile.getName().substring(0, inputFile.getName().length() - ".asm".length());
+            String moduleOutputDirectory = new File(outputDirectory, moduleName).getPath();
+            modules.add(executor.submit(() -> {
+                ArtifactWriter writer = new ArtifactWriter(moduleOutputDirectory, artifacts);
+                AssemblyResult result = cache != null ? cache.assemble(inputFile.getPath(), writer) : new Assembler(inputFile.getPath()).assemble(writer);
+                writer.await();
+                if (writeMetrics) {
+                    result.writeMetrics(moduleOutputDirectory);
+                }
+                return result;
+            }));
+        }
+        executor.shutdown();
+
+        int failures = 0;
+        for (int i = 0; i < modules.size(); i++) {
+            try {
+                AssemblyResult result = modules.get(i).get();
+                if (results != null) {
+                    results.put(inputFiles[i].getName(), result);
+                }
+            } catch (ExecutionException e) {
+                failures++;
+                System.err.println("Failed to assemble " + inputFiles[i] + ": " + e.getCause());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return failures + modules.size() - i;
+            }
+        }
+        System.out.println("Assembled " + (inputFiles.length - failures) + " of " + inputFiles.length + " modules");
+        return failures;
+    }
+
+    private static ExecutorService newExecutor(int threads) {
+        if (threads > 0) {
+            return Executors.newFixedThreadPool(threads);
+        }
+        try {
+            // Executors.newVirtualThreadPerTaskExecutor is only present from Java 21
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException e) {
+            return Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors());
+        }
+    }
+}
+
+// which files of a watched directory include which headers, so that a change to a header assembles the files that include
+// it again. The directory of every header is watched as well, as a header can be anywhere
+class WatchedIncludes {
+    private final WatchService watchService;
+    private final HashMap<String, TreeSet<String>> includers = new HashMap<>(); // by the canonical path of the header
+    private final HashSet<Path> directories = new HashSet<>();
+
+    public WatchedIncludes(WatchService watchService) {
+        this.watchService = watchService;
+    }
+
+    public void watch(Path directory) throws IOException {
+        if (directories.add(directory)) {
+            directory.register(watchService, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY);
+        }
+    }
+
+    // the headers fileName includes now, in place of the ones it included before
+    public void record(String fileName, AssemblyResult result) throws IOException {
+        for (TreeSet<String> files : includers.values()) {
+            files.remove(fileName);
+        }
+        for (IncludedFile includedFile : result.includedFiles) {
+            includers.computeIfAbsent(includedFile.path, path -> new TreeSet<>()).add(fileName);
+            watch(Path.of(includedFile.path).getParent());
+        }
+    }
+
+    // the files that include the changed file, directly or through other headers
+    public TreeSet<String> includers(Path file) throws IOException {
+        TreeSet<String> files = includers.get(file.toFile().getCanonicalPath());
+        return files != null ? files : new TreeSet<>();
+    }
+}
+
+// the --options in front of a command's operands, e.g. assemble --outputs symbols,ic --metrics prog.asm out
+// each spec is an option name, followed by a placeholder when the option takes the next argument as its value
+// ("--metrics", "--outputs <list>"). An unknown option, a missing value or the wrong number of operands throws a
+// UsageException, which Main reports with the command's usage
+class CommandOptions {
+    private final String[] args;
+    private final String usage;
+    private final HashMap<String, String> values = new HashMap<>(); // "" for an option without a value
+    private final int firstOperand;
+
+    public CommandOptions(String[] args, String usage, int minOperands, int maxOperands, String... specs) {
+        this(args, 1, usage, minOperands, maxOperands, specs);
+    }
+
+    // the options and operands from args[first] on
+    public CommandOptions(String[] args, int first, String usage, int minOperands, int maxOperands, String... specs) {
+        this.args = args;
+        this.usage = usage;
+        HashMap<String, Boolean> takesValue = new HashMap<>();
+        for (String spec : specs) {
+            int space = spec.indexOf(' ');
+            takesValue.put(space == -1 ? spec : spec.substring(0, space), space != -1);
+        }
+        int argIndex = first;
+        for (; argIndex < args.length && args[argIndex].startsWith("--"); argIndex++) {
+            Boolean hasValue = takesValue.get(args[argIndex]);
+            if (hasValue == null) {
+                throw new UsageException("Unknown option: " + args[argIndex], usage);
+            }
+            if (hasValue && argIndex + 1 == args.length) {
+                throw new UsageException(args[argIndex] + " needs a value", usage);
+            }
+            values.put(args[argIndex], hasValue ? args[++argIndex] : "");
+        }
+        firstOperand = argIndex;
+        if (operandCount() < minOperands || operandCount() > maxOperands) {
+            throw new UsageException(null, usage);
+        }
+    }
+
+    public boolean has(String name) {
+        return values.containsKey(name);
+    }
+
+    public String value(String name, String defaultValue) {
+        return values.getOrDefault(name, defaultValue);
+    }
+
+    public int intValue(String name, int defaultValue) {
+        return has(name) ? (int) number(name, values.get(name), Integer.MIN_VALUE, Integer.MAX_VALUE) : defaultValue;
+    }
+
+    public long longValue(String name, long defaultValue) {
+        return has(name) ? number(name, values.get(name), Long.MIN_VALUE, Long.MAX_VALUE) : defaultValue;
+    }
+
+    // a comma separated list of numbers, e.g. --input 3,-1,7, empty when the option is not given
+    public int[] intListValue(String name) {
+        if (!has(name)) {
+            return new int[0];
+        }
+        String[] items = values.get(name).split(",");
+        int[] numbers = new int[items.length];
+        for (int i = 0; i < items.length; i++) {
+            numbers[i] = (int) number(name, items[i].trim(), Integer.MIN_VALUE, Integer.MAX_VALUE);
+        }
+        return numbers;
+    }
+
+    // the --outputs list (e.g. symbols,ic), or the default artifacts without it
+    public EnumSet<Artifact> artifacts() {
+        try {
+            return has("--outputs") ? Artifact.parse(values.get("--outputs")) : Artifact.defaults();
+        } catch (IllegalArgumentException e) {
+            throw new UsageException(e.getMessage(), usage);
+        }
+    }
+
+    public int operandCount() {
+        return args.length - firstOperand;
+    }
+
+    public String operand(int index) {
+        return args[firstOperand + index];
+    }
+
+    // where the operand is in args
+    public int argIndex(int operand) {
+        return firstOperand + operand;
+    }
+
+    public int intOperand(int index) {
+        return (int) number("operand " + (index + 1), operand(index), Integer.MIN_VALUE, Integer.MAX_VALUE);
+    }
+
+    private long number(String name, String text, long min, long max) {
+        try {
+            long number = Long.parseLong(text);
+            if (number >= min && number <= max) {
+                return number;
+            }
+        } catch (NumberFormatException e) {
+            // reported below
+        }
+        throw new UsageException(name + " needs a number, not " + text, usage);
+    }
+}
+
+// a command line that does not fit the usage of its command, the message (if any) says what is wrong with it
+class UsageException extends IllegalArgumentException {
+    private static final long serialVersionUID = 1L;
+    public final String usage;
+
+    public UsageException(String message, String usage) {
+        super(message);
+        this.usage = usage;
+    }
+}
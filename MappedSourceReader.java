@@ -0,0 +1,140 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+class MappedSourceReader {
+    // reads the input file word by word from a copy of its memory mapping
+    // a word is only a slice (offset and length) of the buffer, nothing is copied while scanning
+    // the mapping is copied once and not kept, but Java cannot unmap it: the file stays mapped until the garbage
+    // collector frees the mapping. On platforms that lock mapped files, an editor may not save it until then
+    private ByteBuffer buffer;
+    private int start = 0; // first byte read, 0 unless the reader is over a part of the file
+    private int limit;
+    private int position = 0; // next byte to scan
+
+    public int wordOffset = -1;
+    public int wordLength = 0;
+    public boolean isFirstWordInLine = false;
+    public int lineNumber = 0; // 1-based number of the line the current word was read from
+
+    // state before the last readWord, so that the word can be put back with unreadWord
+    private int savedPosition;
+    private int savedWordOffset;
+    private int savedWordLength;
+    private boolean savedIsFirstWordInLine;
+    private int savedLineNumber;
+    private boolean canUnread = false;
+
+    public MappedSourceReader(String filename) throws IOException {
+        try (FileChannel channel = FileChannel.open(Path.of(filename), StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size > Integer.MAX_VALUE) {
+                throw new IOException("Input file is too large to be mapped: " + filename);
+            }
+            MappedByteBuffer mapping = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+            byte[] bytes = new byte[(int) size];
+            mapping.get(0, bytes); // no reference to the mapping outlives the constructor, see above
+            buffer = ByteBuffer.wrap(bytes);
+            limit = (int) size;
+        }
+    }
+
+    // a reader over bytes start to end of the same buffer, for lexing a file in parts (start must begin a line)
+    // line numbers count from 1 at start. Only absolute reads are made on the buffer, so parts can be read from several threads
+    public MappedSourceReader(MappedSourceReader file, int start, int end) {
+        buffer = file.buffer;
+        this.start = start;
+        position = start;
+        limit = end;
+    }
+
+    // lines of the file before start, to turn lineNumber into the line of the file. Counted when asked, as only messages
+    // need it (the lexer numbers the tokens of a part from prefix sums)
+    public int linesBefore() {
+        int lines = 0;
+        for (int offset = 0; offset < start; offset++) {
+            if (buffer.get(offset) == '\n') {
+                lines++;
+            }
+        }
+        return lines;
+    }
+
+    // end of the bytes read, the size of the file unless the reader is over a part of it
+    public int end() {
+        return limit;
+    }
+
+    // move to the next word, returns false at the end of the file
+    public boolean readWord() {
+        savedPosition = position;
+        savedWordOffset = wordOffset;
+        savedWordLength = wordLength;
+        savedIsFirstWordInLine = isFirstWordInLine;
+        savedLineNumber = lineNumber;
+        canUnread = true;
+
+        boolean isNewLine = wordOffset == -1;
+        if (lineNumber == 0) {
+            lineNumber = 1;
+        }
+        while (position < limit && isWhitespace(buffer.get(position))) {
+            if (buffer.get(position) == '\n') {
+                lineNumber++;
+                isNewLine = true;
+            }
+            position++;
+        }
+        if (position == limit) {
+            wordOffset = limit;
+            wordLength = 0;
+            return false; // end of file
+        }
+
+        isFirstWordInLine = isNewLine;
+
+        wordOffset = position;
+        while (position < limit && !isWhitespace(buffer.get(position))) {
+            position++;
+        }
+        wordLength = position - wordOffset;
+        return true;
+    }
+
+    // put the current word back, so that the next readWord returns it again (one level deep)
+    public void unreadWord() {
+        if (!canUnread) {
+            throw new IllegalStateException("Only the last word read can be put back");
+        }
+        position = savedPosition;
+        wordOffset = savedWordOffset;
+        wordLength = savedWordLength;
+        isFirstWordInLine = savedIsFirstWordInLine;
+        lineNumber = savedLineNumber;
+        canUnread = false;
+    }
+
+    // the current word, decoded like every other text
+    public String word() {
+        return text(wordOffset, wordLength);
+    }
+
+    public byte byteAt(int offset) {
+        return buffer.get(offset);
+    }
+
+    // the source is read as UTF-8 (the words are compared as bytes, which gives the same result)
+    public String text(int offset, int length) {
+        byte[] bytes = new byte[length];
+        buffer.get(offset, bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static boolean isWhitespace(byte b) {
+        return b == ' ' || b == '\n' || b == '\t' || b == '\r' || b == '\f' || b == 0x0B;
+    }
+}
@@ -0,0 +1,57 @@
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+
+class ObjectImage {
+    /*
+        memory image of an assembled program, words[i] is the word at address origin + i
+        an instruction word is (opcode << 24) | (register or condition code << 20) | memory address
+        a data word (DC constant or literal) is the value itself, words reserved by DS are 0
+    */
+    public static final int OPCODE_SHIFT = 24;
+    public static final int REGISTER_SHIFT = 20;
+    public static final int REGISTER_MASK = 0xF;
+    public static final int ADDRESS_MASK = 0xFFFFF;
+    private static final int MAGIC = 0x4F420001; // "OB" and format version 1
+
+    public int origin;
+    public int entryAddress; // address of the first instruction
+    public int[] words;
+
+    public ObjectImage(int origin, int entryAddress, int[] words) {
+        this.origin = origin;
+        this.entryAddress = entryAddress;
+        this.words = words;
+    }
+
+    public static int instructionWord(int opcode, int register, int memoryAddress) {
+        if ((memoryAddress & ~ADDRESS_MASK) != 0 || (register & ~REGISTER_MASK) != 0) {
+            throw new IllegalArgumentException("Operand does not fit in an instruction word: register " + register + ", address " + memoryAddress);
+        }
+        return (opcode << OPCODE_SHIFT) | (register << REGISTER_SHIFT) | memoryAddress;
+    }
+
+    // binary (.obj) form: int magic, int origin, int entryAddress, int length, length x int word (big-endian)
+    public void write(DataOutputStream output) throws IOException {
+        output.writeInt(MAGIC);
+        output.writeInt(origin);
+        output.writeInt(entryAddress);
+        output.writeInt(words.length);
+        for (int word : words) {
+            output.writeInt(word);
+        }
+    }
+
+    public static ObjectImage read(DataInputStream input) throws IOException {
+        if (input.readInt() != MAGIC) {
+            throw new IOException("Not an object image");
+        }
+        int origin = input.readInt();
+        int entryAddress = input.readInt();
+        int[] words = new int[input.readInt()];
+        for (int i = 0; i < words.length; i++) {
+            words[i] = input.readInt();
+        }
+        return new ObjectImage(origin, entryAddress, words);
+    }
+}
@@ -0,0 +1,243 @@
+import java.io.IOException;
+import java.io.Writer;
+
+class Pass2 implements MachineCodeSource {
+    // generates the target code straight from the in-memory result of pass 1 (no tables are read back from files)
+    private AssemblyResult result;
+    private int[] symbolAddresses; // indexed by symbol id
+    private int ltorgOpcode = -1;
+    private int endOpcode = -1;
+    private int dcOpcode = -1;
+
+    public Pass2(AssemblyResult result) {
+        this.result = result;
+
+        symbolAddresses = new int[result.symbolTable.size() + 1];
+        for (int id = 1; id <= result.symbolTable.size(); id++) {
+            symbolAddresses[id] = result.symbolTable.getAddress(id);
+        }
+
+        MachineOpcodeTableEntry ltorg = MachineOpcodeTable.get("ltorg");
+        MachineOpcodeTableEntry end = MachineOpcodeTable.get("end");
+        MachineOpcodeTableEntry dc = MachineOpcodeTable.get("dc");
+        if (ltorg != null) ltorgOpcode = ltorg.opcode;
+        if (end != null) endOpcode = end.opcode;
+        if (dc != null) dcOpcode = dc.opcode;
+    }
+
+    // receives the target code one word at a time, in the order of the intermediate code
+    interface Target {
+        void instruction(int address, int opcode, int register, int memoryAddress) throws IOException;
+        void data(int address, int value) throws IOException;
+        void reserve(int address) throws IOException;
+    }
+
+    public void writeMachineCode(Writer output) throws IOException {
+        writeMachineCode(this, output);
+    }
+
+    public ObjectImage buildObjectImage() {
+        return buildObjectImage(this);
+    }
+
+    // write the target code as text, one word per line: "address) opcode register memory-address"
+    public static void writeMachineCode(MachineCodeSource source, Writer output) throws IOException {
+        StringBuilder line = new StringBuilder(32);
+        source.generate(new Target() {
+            public void instruction(int address, int opcode, int register, int memoryAddress) throws IOException {
+                line.setLength(0);
+                line.append(address).append(") ");
+                appendPadded(line, opcode, 2).append(' ').append(register).append(' ');
+                appendPadded(line, memoryAddress, 3).append('\n');
+                output.append(line);
+            }
+
+            public void data(int address, int value) throws IOException {
+                line.setLength(0);
+                line.append(address).append(") 00 0 ");
+                appendPadded(line, value, 3).append('\n');
+                output.append(line);
+            }
+
+            public void reserve(int address) throws IOException {
+                line.setLength(0);
+                line.append(address).append(")\n");
+                output.append(line);
+            }
+        });
+        output.flush();
+    }
+
+    public static ObjectImage buildObjectImage(MachineCodeSource source) {
+        // first find the address range, then fill in the words
+        int[] bounds = {Integer.MAX_VALUE, Integer.MIN_VALUE, -1}; // lowest address, highest address, entry address
+        generateUnchecked(source, new Target() {
+            public void instruction(int address, int opcode, int register, int memoryAddress) {
+                include(address);
+                if (bounds[2] == -1) {
+                    bounds[2] = address;
+                }
+            }
+
+            public void data(int address, int value) {
+                include(address);
+            }
+
+            public void reserve(int address) {
+                include(address);
+            }
+
+            private void include(int address) {
+                bounds[0] = Math.min(bounds[0], address);
+                bounds[1] = Math.max(bounds[1], address);
+            }
+        });
+
+        if (bounds[1] < bounds[0]) {
+            return new ObjectImage(0, 0, new int[0]); // no code
+        }
+        int origin = bounds[0];
+        int[] words = new int[bounds[1] - origin + 1];
+        generateUnchecked(source, new Target() {
+            public void instruction(int address, int opcode, int register, int memoryAddress) {
+                words[address - origin] = ObjectImage.instructionWord(opcode, register, memoryAddress);
+            }
+
+            public void data(int address, int value) {
+                words[address - origin] = value;
+            }
+
+            public void reserve(int address) {
+                words[address - origin] = 0;
+            }
+        });
+        return new ObjectImage(origin, bounds[2] == -1 ? origin : bounds[2], words);
+    }
+
+    static void generateUnchecked(MachineCodeSource source, Target target) {
+        try {
+            source.generate(target);
+        } catch (IOException e) {
+            throw new IllegalStateException(e); // the in-memory targets do not throw
+        }
+    }
+
+    @Override
+    public void generate(Target target) throws IOException {
+        IntermediateCode intermediateCode = result.intermediateCode;
+        byte[] kinds = intermediateCode.kinds;
+        int[] values = intermediateCode.values;
+        int currentPoolNumber = 1; // starts from 1 (not zero based)
+
+        for (int statement = 0; statement < intermediateCode.statementCount; statement++) {
+            int start = intermediateCode.statementStarts[statement];
+            int end = intermediateCode.statementEnd(statement);
+            if (start == end) {
+                continue; // a line with only a label
+            }
+            int address = intermediateCode.statementAddresses[statement];
+            int opcode = values[start];
+
+            switch (kinds[start]) {
+                case IntermediateCode.IS: {
+                    int register = 0;
+                    int memoryAddress = 0;
+                    for (int i = start + 1; i < end; i++) {
+                        switch (kinds[i]) {
+                            case IntermediateCode.RG:
+                            case IntermediateCode.CC:
+                                register = values[i];
+                                break;
+                            case IntermediateCode.SYMBOL:
+                                memoryAddress = symbolAddress(values[i], statement);
+                                if (memoryAddress == -1) {
+                                    throw unplaced("symbol " + result.symbolTable.getName(values[i]) + " has no address", statement);
+                                }
+                                break;
+                            case IntermediateCode.LITERAL:
+                                memoryAddress = literalEntry(values[i], statement).address;
+                                if (memoryAddress == -1) {
+                                    throw unplaced("literal " + literalEntry(values[i], statement).literal + " has no address, no LTORG or END follows it", statement);
+                                }
+                                break;
+                            case IntermediateCode.CONSTANT:
+                                memoryAddress = values[i];
+                                break;
+                            default:
+                                break;
+                        }
+                    }
+                    target.instruction(address, opcode, register, memoryAddress);
+                    break;
+                }
+                case IntermediateCode.DL:
+                    if (opcode == dcOpcode && start + 1 < end && kinds[start + 1] == IntermediateCode.SYMBOL) {
+                        target.data(address, symbolAddress(values[start + 1], statement));
+                    } else if (opcode == dcOpcode) {
+                        target.data(address, start + 1 < end ? values[start + 1] : 0);
+                    } else {
+                        target.reserve(address);
+                    }
+                    break;
+                case IntermediateCode.AD:
+                    // the literals of the pool are placed after ltorg and end
+                    if (opcode == ltorgOpcode || opcode == endOpcode) {
+                        PoolTableEntry pool = result.poolTable.table.get(currentPoolNumber);
+                        if (pool != null) {
+                            for (int id = pool.literalId; id < pool.literalId + pool.poolLength; id++) {
+                                LiteralTableEntry literal = literalEntry(id, statement);
+                                target.data(literal.address, literalValue(literal.literal));
+                            }
+                        }
+                        currentPoolNumber++;
+                    }
+                    break;
+                default:
+                    break;
+            }
+        }
+    }
+
+    private int symbolAddress(int id, int statement) {
+        if (id <= 0 || id >= symbolAddresses.length) {
+            throw new IllegalStateException("Line " + result.intermediateCode.statementLines[statement] + ": unknown symbol id " + id);
+        }
+        return symbolAddresses[id];
+    }
+
+    // -1 is the address of a symbol or literal that was never placed, it must not end up in the target code
+    private IllegalStateException unplaced(String message, int statement) {
+        return new IllegalStateException("Line " + result.intermediateCode.statementLines[statement] + ": " + message);
+    }
+
+    private LiteralTableEntry literalEntry(int id, int statement) {
+        if (id <= 0 || id > result.literalTable.table.size()) {
+            throw new IllegalStateException("Line " + result.intermediateCode.statementLines[statement] + ": unknown literal id " + id);
+        }
+        return result.literalTable.table.get(id - 1);
+    }
+
+    // ='5' -> 5
+    static int literalValue(String literal) {
+        return Integer.parseInt(literal.substring(2, literal.length() - 1));
+    }
+
+    private static StringBuilder appendPadded(StringBuilder buffer, int value, int width) {
+        if (value < 0) {
+            return buffer.append(value);
+        }
+        int digits = 1;
+        for (int rest = value; rest >= 10; rest /= 10) {
+            digits++;
+        }
+        for (; digits < width; digits++) {
+            buffer.append('0');
+        }
+        return buffer.append(value);
+    }
+}
+
+// produces the target code, from the intermediate code (Pass2) or from the one-pass walk (MachineCode)
+interface MachineCodeSource {
+    void generate(Pass2.Target target) throws IOException;
+}
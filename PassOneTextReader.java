@@ -0,0 +1,125 @@
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+import java.util.ArrayList;
+
+class PassOneTextReader {
+    // reads the text files written by pass 1 back into an AssemblyResult
+    // this is the slow text handoff that Pass2 avoids, it is kept for running pass 2 in a separate process
+    // the text intermediate code has no addresses, so they are worked out again from START and the statement sizes
+    // (ORIGIN cannot be followed, as its operand is not in the intermediate code)
+
+    public static AssemblyResult read(String pass1OutputDirectory) throws IOException {
+        LiteralTable literalTable = new LiteralTable();
+        for (String[] row : readRows(new File(pass1OutputDirectory, "literal_table.txt"))) {
+            literalTable.table.add(new LiteralTableEntry(Integer.parseInt(row[0]), row[1], Integer.parseInt(row[2])));
+        }
+
+        SymbolTable symbolTable = new SymbolTable();
+        for (String[] row : readRows(new File(pass1OutputDirectory, "symbol_table.txt"))) {
+            symbolTable.define(row[1], Integer.parseInt(row[2])); // the rows are in id order
+        }
+
+        PoolTable poolTable = new PoolTable();
+        for (String[] row : readRows(new File(pass1OutputDirectory, "pool_table.txt"))) {
+            poolTable.table.put(Integer.parseInt(row[0]), new PoolTableEntry(Integer.parseInt(row[1]), Integer.parseInt(row[2])));
+        }
+
+        IntermediateCode intermediateCode = readIntermediateCode(new File(pass1OutputDirectory, "intermediate_code.txt"), poolTable);
+        return new AssemblyResult(symbolTable, literalTable, poolTable, intermediateCode, pass1OutputDirectory);
+    }
+
+    // table rows after the title and the column headings
+    private static ArrayList<String[]> readRows(File file) throws IOException {
+        ArrayList<String[]> rows = new ArrayList<>();
+        try (BufferedReader reader = new BufferedReader(new FileReader(file))) {
+            reader.readLine();
+            reader.readLine();
+            String line;
+            while ((line = reader.readLine()) != null) {
+                line = line.strip();
+                if (!line.isEmpty()) {
+                    rows.add(line.split("\\s+"));
+                }
+            }
+        }
+        return rows;
+    }
+
+    private static IntermediateCode readIntermediateCode(File file, PoolTable poolTable) throws IOException {
+        IntermediateCode intermediateCode = new IntermediateCode();
+        MachineOpcodeTableEntry start = MachineOpcodeTable.get("start");
+        MachineOpcodeTableEntry origin = MachineOpcodeTable.get("origin");
+        MachineOpcodeTableEntry ltorg = MachineOpcodeTable.get("ltorg");
+        MachineOpcodeTableEntry end = MachineOpcodeTable.get("end");
+        int nextAddress = 0;
+        int currentPoolNumber = 1;
+        int lineNumber = 0;
+
+        try (BufferedReader reader = new BufferedReader(new FileReader(file))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                lineNumber++;
+                int statementStart = intermediateCode.itemCount;
+                intermediateCode.startStatement(lineNumber, nextAddress);
+                parseItems(line, intermediateCode, lineNumber);
+
+                if (statementStart == intermediateCode.itemCount) {
+                    nextAddress++; // a line with only a label takes an address
+                    continue;
+                }
+                byte kind = intermediateCode.kinds[statementStart];
+                int opcode = intermediateCode.values[statementStart];
+                if (kind == IntermediateCode.IS || kind == IntermediateCode.DL) {
+                    nextAddress++;
+                } else if (kind == IntermediateCode.AD) {
+                    if (start != null && opcode == start.opcode && intermediateCode.itemCount > statementStart + 1) {
+                        nextAddress = intermediateCode.values[statementStart + 1];
+                    } else if (origin != null && opcode == origin.opcode) {
+                        throw new IOException(file + ":" + lineNumber + ": ORIGIN cannot be followed from the text intermediate code");
+                    } else if ((ltorg != null && opcode == ltorg.opcode) || (end != null && opcode == end.opcode)) {
+                        PoolTableEntry pool = poolTable.table.get(currentPoolNumber++);
+                        if (pool != null) {
+                            nextAddress += pool.poolLength;
+                        }
+                    }
+                }
+            }
+        }
+        return intermediateCode;
+    }
+
+    // "(IS, 4) (1) (L, 1) " -> IS 4, RG 1, LITERAL 1
+    private static void parseItems(String line, IntermediateCode intermediateCode, int lineNumber) throws IOException {
+        int position = 0;
+        while ((position = line.indexOf('(', position)) != -1) {
+            int close = line.indexOf(')', position);
+            if (close == -1) {
+                throw new IOException("intermediate_code.txt:" + lineNumber + ": missing )");
+            }
+            int comma = line.indexOf(',', position);
+            if (comma == -1 || comma > close) {
+                intermediateCode.add(IntermediateCode.RG, Integer.parseInt(line.substring(position + 1, close).strip()));
+            } else {
+                String kindName = line.substring(position + 1, comma).strip();
+                int value = Integer.parseInt(line.substring(comma + 1, close).strip());
+                intermediateCode.add(kindOf(kindName, lineNumber), value);
+            }
+            position = close + 1;
+        }
+    }
+
+    private static byte kindOf(String kindName, int lineNumber) throws IOException {
+        switch (kindName) {
+            case "IS": return IntermediateCode.IS;
+            case "AD": return IntermediateCode.AD;
+            case "DL": return IntermediateCode.DL;
+            case "CC": return IntermediateCode.CC;
+            case "S": return IntermediateCode.SYMBOL;
+            case "L": return IntermediateCode.LITERAL;
+            case "C": return IntermediateCode.CONSTANT;
+            default: throw new IOException("intermediate_code.txt:" + lineNumber + ": unknown item " + kindName);
+        }
+    }
+}
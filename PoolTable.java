@@ -1,19 +1,22 @@
+import java.io.IOException;
 import java.util.HashMap;
 
 class PoolTable {
     // id (serial number) mapped to PoolTableEntry
     public HashMap<Integer, PoolTableEntry> table = new HashMap<>();
 
+    public void write(ChannelTextWriter output) throws IOException {
+        output.append("Pool Table:\n");
+        output.appendLeft("ID", 4).append(' ').appendLeft("Lit. ID", 8).append(' ').appendLeft("Pool Length", 11).append('\n');
+        for (int id = 1; id <= table.size(); id++) {
+            PoolTableEntry entry = table.get(id);
+            output.appendLeft(id, 4).append(' ').appendLeft(entry.literalId, 8).append(' ').appendLeft(entry.poolLength, 11).append('\n');
+        }
+    }
+
     @Override
     public String toString() {
-        StringBuilder buffer = new StringBuilder();
-        buffer.append("Pool Table:\n");
-        buffer.append(String.format("%-4s %-8s %-11s\n", "ID", "Lit. ID", "Pool Length"));
-        for (int key : table.keySet()) {
-            PoolTableEntry entry = table.get(key);
-            buffer.append(String.format("%-4d %-8d %-11d\n", key, entry.literalId, entry.poolLength));
-        }
-        return buffer.toString();
+        return ChannelTextWriter.render(this::write);
     }
 }
 
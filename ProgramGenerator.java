@@ -0,0 +1,186 @@
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Random;
+
+public class ProgramGenerator {
+    // writes synthetic assembly programs for benchmarks
+    // usage: java ProgramGenerator <output .asm file> [lines=N] [symbols=N] [literalDensity=0..1] [distinctLiterals=N]
+    //        [ltorgEvery=N] [originEvery=N] [equEvery=N] [expressionEvery=N] [dcEvery=N] [labelEvery=N] [seed=N] [modules=N module=N externalDensity=0..1]
+    private static final String[] REGISTERS = {"AREG", "BREG", "CREG", "DREG"};
+    private static final String[] CONDITIONS = {"EQ", "LT", "GT", "LE", "GE", "ANY"};
+    private static final String[] ARITHMETIC = {"MOVER", "ADD", "SUB", "MULT", "COMP"};
+
+    public int lines = 10_000; // total number of lines
+    public int symbols = 100; // data symbols, defined with DS at the end
+    public double literalDensity = 0.2; // share of instructions with a literal operand
+    public int distinctLiterals = 10;
+    public int ltorgEvery = 50; // 0 = only at END
+    public int originEvery = 0; // 0 = never, each ORIGIN keeps the location counter where it was
+    public int equEvery = 0; // 0 = never
+    public int expressionEvery = 0; // 0 = never, else an EQU with an expression over the last label and the first one
+    // 0 = never, else an instruction that uses a DC constant defined after STOP. Its operand is a constant, a lone symbol
+    // (a label, an EQU symbol or a data symbol defined after it) or an expression over labels and data symbols. In a
+    // program of modules only constants, lone symbols and differences of labels, which the linker can move
+    public int dcEvery = 0;
+    public int labelEvery = 10; // 0 = no labels (and no branches, ORIGIN or EQU)
+    public long seed = 1;
+    // a program of modules for the linker: with more than one module the symbols of module m are named M<m>_..., and the
+    // share externalDensity of the data references goes to the data symbols of other modules
+    public int modules = 1;
+    public int module = 0;
+    public double externalDensity = 0;
+
+    public static void main(String[] args) throws IOException {
+        if (args.length == 0) {
+            System.err.println("Usage: java ProgramGenerator <output .asm file> [lines=N] [symbols=N] [literalDensity=0..1] [distinctLiterals=N]"
+                + " [ltorgEvery=N] [originEvery=N] [equEvery=N] [expressionEvery=N] [dcEvery=N] [labelEvery=N] [seed=N] [modules=N module=N externalDensity=0..1]");
+            System.exit(2);
+        }
+        ProgramGenerator generator = new ProgramGenerator();
+        for (int i = 1; i < args.length; i++) {
+            generator.set(args[i]);
+        }
+        generator.write(new File(args[0]));
+    }
+
+    // name=value
+    public void set(String setting) {
+        int equals = setting.indexOf('=');
+        if (equals == -1) {
+            throw new IllegalArgumentException("Expected name=value: " + setting);
+        }
+        String value = setting.substring(equals + 1);
+        switch (setting.substring(0, equals)) {
+            case "lines": lines = Integer.parseInt(value); break;
+            case "symbols": symbols = Integer.parseInt(value); break;
+            case "literalDensity": literalDensity = Double.parseDouble(value); break;
+            case "distinctLiterals": distinctLiterals = Integer.parseInt(value); break;
+            case "ltorgEvery": ltorgEvery = Integer.parseInt(value); break;
+            case "originEvery": originEvery = Integer.parseInt(value); break;
+            case "equEvery": equEvery = Integer.parseInt(value); break;
+            case "expressionEvery": expressionEvery = Integer.parseInt(value); break;
+            case "dcEvery": dcEvery = Integer.parseInt(value); break;
+            case "labelEvery": labelEvery = Integer.parseInt(value); break;
+            case "seed": seed = Long.parseLong(value); break;
+            case "modules": modules = Integer.parseInt(value); break;
+            case "module": module = Integer.parseInt(value); break;
+            case "externalDensity": externalDensity = Double.parseDouble(value); break;
+            default: throw new IllegalArgumentException("Unknown setting: " + setting);
+        }
+    }
+
+    public void write(File file) throws IOException {
+        File parentDir = file.getParentFile();
+        if (parentDir != null && !parentDir.exists()) {
+            parentDir.mkdirs();
+        }
+        try (Writer output = new BufferedWriter(new FileWriter(file), 1 << 16)) {
+            write(output);
+        }
+    }
+
+    public void write(Writer output) throws IOException {
+        Random random = new Random(seed);
+        int dataSymbols = Math.max(1, symbols);
+        int codeLines = Math.max(0, lines - dataSymbols - 3); // START, STOP and END are the other three
+        int lastLabel = -1; // line number of the last label, -1 if there is none since the last LTORG
+        int firstLabel = -1;
+        int sinceLastLabel = 0; // statements since the last label
+        String lastEqu = null; // the last EQU symbol
+        StringBuilder constants = new StringBuilder(); // the DC lines, written after STOP
+        String prefix = modules > 1 ? "M" + module + "_" : "";
+
+        output.write("START 100\n");
+        for (int i = 1; i <= codeLines; i++) {
+            if (ltorgEvery > 0 && i % ltorgEvery == 0) {
+                output.write("LTORG\n");
+                lastLabel = -1; // the pool moves the location counter
+                continue;
+            }
+            if (originEvery > 0 && i % originEvery == 0 && lastLabel != -1) {
+                // points at the address the next statement would get anyway
+                output.write("ORIGIN " + prefix + "L" + lastLabel + "+" + sinceLastLabel + "\n");
+                continue;
+            }
+            if (equEvery > 0 && i % equEvery == 0 && lastLabel != -1) {
+                output.write(prefix + "E" + i + " EQU " + prefix + "L" + lastLabel + "\n");
+                lastEqu = prefix + "E" + i;
+                continue;
+            }
+
+            if (expressionEvery > 0 && i % expressionEvery == 0 && lastLabel != -1) {
+                output.write(prefix + "X" + i + " EQU " + prefix + "L" + lastLabel + "+2*(" + prefix + "L" + lastLabel + "-" + prefix + "L" + firstLabel + ")\n");
+                lastEqu = prefix + "X" + i;
+                continue;
+            }
+
+            if (labelEvery > 0 && i % labelEvery == 0) {
+                output.write(prefix + "L" + i + " ");
+                lastLabel = i;
+                if (firstLabel == -1) {
+                    firstLabel = i;
+                }
+                sinceLastLabel = 0;
+            }
+            sinceLastLabel++;
+
+            if (dcEvery > 0 && i % dcEvery == 0) {
+                output.write("MOVER " + REGISTERS[random.nextInt(REGISTERS.length)] + ", " + prefix + "D" + i + "\n");
+                constants.append(prefix).append("D").append(i).append(" DC ")
+                    .append(constantOperand(random, dataSymbols, prefix, lastLabel, firstLabel, lastEqu)).append("\n");
+                continue;
+            }
+
+            int choice = random.nextInt(10);
+            String register = REGISTERS[random.nextInt(REGISTERS.length)];
+            if (choice == 0 && lastLabel != -1 && lastLabel != i) {
+                output.write("BC " + CONDITIONS[random.nextInt(CONDITIONS.length)] + ", " + prefix + "L" + lastLabel + "\n");
+            } else if (choice == 1) {
+                output.write("MOVEM " + register + ", " + dataSymbol(random, dataSymbols, prefix) + "\n");
+            } else if (choice == 2) {
+                output.write((random.nextBoolean() ? "READ" : "PRINT") + " " + dataSymbol(random, dataSymbols, prefix) + "\n");
+            } else {
+                String mnemonic = ARITHMETIC[random.nextInt(ARITHMETIC.length)];
+                if (random.nextDouble() < literalDensity) {
+                    output.write(mnemonic + " " + register + ", ='" + random.nextInt(Math.max(1, distinctLiterals)) + "'\n");
+                } else {
+                    output.write(mnemonic + " " + register + ", " + dataSymbol(random, dataSymbols, prefix) + "\n");
+                }
+            }
+        }
+        output.write("STOP\n");
+        output.write(constants.toString());
+        for (int i = 0; i < dataSymbols; i++) {
+            output.write(prefix + "V" + i + " DS 1\n");
+        }
+        output.write("END\n");
+    }
+
+    // the operand of a DC, see dcEvery
+    private String constantOperand(Random random, int dataSymbols, String prefix, int lastLabel, int firstLabel, String lastEqu) {
+        String label = lastLabel != -1 ? prefix + "L" + lastLabel : null;
+        switch (random.nextInt(modules > 1 ? 5 : 8)) {
+            case 0: return "'" + random.nextInt(100) + "'";
+            case 1: return label != null ? label : dataSymbol(random, dataSymbols, prefix);
+            case 2: return lastEqu != null ? lastEqu : dataSymbol(random, dataSymbols, prefix);
+            case 3: return dataSymbol(random, dataSymbols, prefix); // defined after the DC
+            case 4: return label != null ? "(" + label + "-" + prefix + "L" + firstLabel + ")*2" : String.valueOf(random.nextInt(100));
+            case 5: return label != null ? label + "+" + random.nextInt(10) : prefix + "V0+1";
+            case 6: return prefix + "V" + random.nextInt(dataSymbols) + "-" + random.nextInt(10); // defined after the DC
+            default: return lastEqu != null ? lastEqu + "+" + random.nextInt(10) : prefix + "V0*1";
+        }
+    }
+
+    // one of this module's data symbols, or of another module's
+    private String dataSymbol(Random random, int dataSymbols, String prefix) {
+        int symbol = random.nextInt(dataSymbols);
+        if (modules > 1 && random.nextDouble() < externalDensity) {
+            int other = random.nextInt(modules - 1);
+            return "M" + (other >= module ? other + 1 : other) + "_V" + symbol;
+        }
+        return prefix + "V" + symbol;
+    }
+}
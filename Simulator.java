@@ -0,0 +1,211 @@
+import java.util.Arrays;
+
+class Simulator {
+    /*
+        runs an assembled program (an ObjectImage) on a flat word memory indexed by absolute address
+        STOP            halt
+        ADD/SUB/MULT/DIV register, m      register = register op memory[m] (32 bit, DIV rounds towards zero)
+        MOVER/LOAD register, m            register = memory[m]
+        MOVEM register, m                 memory[m] = register
+        COMP register, m                  compare register with memory[m], for the next BC
+        BC condition, m                   jump to m if the last comparison matches (EQ LT GT LE GE, ANY always)
+        READ m / PRINT m                  memory[m] = next input (0 once the input ran out) / output memory[m]
+        the opcodes, registers and condition codes are looked up by mnemonic in MachineOpcodeTable when the simulator is
+        made, each word is decoded with two array lookups and dispatched by a switch. Nothing is allocated per instruction
+        (the output buffer doubles when full), so one simulator can run any number of programs
+    */
+    public static final long DEFAULT_STEP_LIMIT = 100_000_000; // generated programs can loop forever
+
+    // operations, the cases of the dispatch loop (0 is an opcode that is not in the table)
+    private static final int STOP = 1, ADD = 2, SUB = 3, MULT = 4, MOVER = 5, MOVEM = 6, COMP = 7, BC = 8, DIV = 9,
+        READ = 10, PRINT = 11, LOAD = 12;
+    private static final String[] OPERATION_MNEMONICS = {null, "stop", "add", "sub", "mult", "mover", "movem", "comp", "bc",
+        "div", "read", "print", "load"};
+    // conditions, the comparison results they accept as a bit mask over less (1), equal (2), greater (4) and no
+    // comparison yet (8)
+    private static final String[] CONDITION_MNEMONICS = {"eq", "lt", "gt", "le", "ge", "any"};
+    private static final int[] CONDITION_MASKS = {2, 1, 4, 3, 6, 15};
+    private static final int LESS = 1, EQUAL = 2, GREATER = 4, NOT_COMPARED = 8;
+
+    private final int[] operations = new int[256]; // by opcode
+    private final int[] registerIndexes = new int[ObjectImage.REGISTER_MASK + 1]; // by register code, 0 = none
+    private final int[] conditionMasks = new int[ObjectImage.REGISTER_MASK + 1]; // by condition code, 0 never jumps
+
+    private int[] memory = new int[0];
+    private int imageStart; // the program's words are memory[imageStart] to memory[imageEnd - 1]
+    private int imageEnd;
+    private int entryAddress;
+
+    public final int[] registers = new int[4]; // AREG, BREG, CREG, DREG
+    public int comparison; // LESS, EQUAL or GREATER from the last COMP, NOT_COMPARED before the first
+    public int programCounter;
+    public long steps; // instructions executed by the last run
+    private int[] input = new int[0];
+    private int inputPosition;
+    private int[] output = new int[64];
+    private int outputSize;
+    public String fault; // why the last run stopped early, null if it ran to STOP or the step limit
+
+    public Simulator() {
+        for (int operation = 1; operation < OPERATION_MNEMONICS.length; operation++) {
+            MachineOpcodeTableEntry entry = MachineOpcodeTable.get(OPERATION_MNEMONICS[operation]);
+            if (entry != null && entry.instructionClass == InstructionClass.IS && entry.opcode >= 0 && entry.opcode < operations.length) {
+                operations[entry.opcode] = operation;
+            }
+        }
+        int register = 0;
+        for (String mnemonic : new String[]{"areg", "breg", "creg", "dreg"}) {
+            MachineOpcodeTableEntry entry = MachineOpcodeTable.get(mnemonic);
+            register++;
+            if (entry != null && entry.opcode > 0 && entry.opcode < registerIndexes.length) {
+                registerIndexes[entry.opcode] = register;
+            }
+        }
+        for (int condition = 0; condition < CONDITION_MNEMONICS.length; condition++) {
+            MachineOpcodeTableEntry entry = MachineOpcodeTable.get(CONDITION_MNEMONICS[condition]);
+            if (entry != null && entry.opcode > 0 && entry.opcode < conditionMasks.length) {
+                conditionMasks[entry.opcode] = CONDITION_MASKS[condition];
+            }
+        }
+    }
+
+    public void load(AssemblyResult result) {
+        load(Pass2.buildObjectImage(MachineCode.of(result)));
+    }
+
+    // copy the program into memory (reused while it is large enough) and reset the registers, the input and the output
+    public void load(ObjectImage image) {
+        int end = image.origin + image.words.length;
+        if (memory.length < end) {
+            memory = new int[Math.max(end, memory.length * 2)];
+        } else {
+            Arrays.fill(memory, 0, imageEnd, 0); // what the last program left behind
+        }
+        System.arraycopy(image.words, 0, memory, image.origin, image.words.length);
+        imageStart = image.origin;
+        imageEnd = end;
+        entryAddress = image.entryAddress;
+        setInput(new int[0]);
+    }
+
+    // the values READ returns, in order (the array is used as it is)
+    public void setInput(int[] input) {
+        this.input = input;
+        inputPosition = 0;
+        outputSize = 0;
+        Arrays.fill(registers, 0);
+        comparison = NOT_COMPARED;
+        programCounter = entryAddress;
+        steps = 0;
+        fault = null;
+    }
+
+    // run until STOP, a fault or stepLimit instructions, returns whether it reached STOP
+    // after a fault the program counter is left on the instruction that was not executed
+    public boolean run(long stepLimit) {
+        int[] memory = this.memory;
+        int[] registers = this.registers;
+        int[] operations = this.operations;
+        int[] registerIndexes = this.registerIndexes;
+        int[] conditionMasks = this.conditionMasks;
+        int imageStart = this.imageStart;
+        int imageEnd = this.imageEnd;
+        int pc = programCounter;
+        int comparison = this.comparison;
+        long step = 0;
+        boolean isStopped = false;
+
+        loop:
+        while (step < stepLimit) {
+            if (pc < imageStart || pc >= imageEnd) {
+                fault = "Jumped outside the program to " + pc;
+                break;
+            }
+            int word = memory[pc];
+            int operation = operations[word >>> ObjectImage.OPCODE_SHIFT];
+            int registerCode = (word >>> ObjectImage.REGISTER_SHIFT) & ObjectImage.REGISTER_MASK;
+            int address = word & ObjectImage.ADDRESS_MASK;
+            if (operation == 0) {
+                fault = "Unknown opcode " + (word >>> ObjectImage.OPCODE_SHIFT) + " at " + pc;
+                break;
+            }
+            if (operation != STOP && operation != BC && (address < imageStart || address >= imageEnd)) {
+                fault = "Address " + address + " outside the program at " + pc;
+                break;
+            }
+            int register = registerIndexes[registerCode] - 1; // -1 for READ, PRINT and STOP
+            if (register < 0 && operation != STOP && operation != BC && operation != READ && operation != PRINT) {
+                fault = "No register in the instruction at " + pc;
+                break;
+            }
+            step++;
+            pc++;
+            switch (operation) {
+                case STOP:
+                    isStopped = true;
+                    break loop;
+                case ADD:
+                    registers[register] += memory[address];
+                    break;
+                case SUB:
+                    registers[register] -= memory[address];
+                    break;
+                case MULT:
+                    registers[register] *= memory[address];
+                    break;
+                case DIV:
+                    if (memory[address] == 0) {
+                        step--;
+                        pc--;
+                        fault = "Division by zero at " + pc;
+                        break loop;
+                    }
+                    registers[register] /= memory[address];
+                    break;
+                case MOVER:
+                case LOAD:
+                    registers[register] = memory[address];
+                    break;
+                case MOVEM:
+                    memory[address] = registers[register];
+                    break;
+                case COMP:
+                    int difference = Integer.compare(registers[register], memory[address]);
+                    comparison = difference < 0 ? LESS : difference == 0 ? EQUAL : GREATER;
+                    break;
+                case BC:
+                    if ((conditionMasks[registerCode] & comparison) != 0) {
+                        pc = address;
+                    }
+                    break;
+                case READ:
+                    memory[address] = inputPosition < input.length ? input[inputPosition++] : 0;
+                    break;
+                case PRINT:
+                    if (outputSize == output.length) {
+                        output = Arrays.copyOf(output, outputSize * 2);
+                    }
+                    output[outputSize++] = memory[address];
+                    break;
+            }
+        }
+
+        programCounter = pc;
+        this.comparison = comparison;
+        steps = step;
+        return isStopped;
+    }
+
+    public boolean isInProgram(int address) {
+        return address >= imageStart && address < imageEnd;
+    }
+
+    public int memory(int address) {
+        return memory[address];
+    }
+
+    // the values PRINT wrote, in order
+    public int[] output() {
+        return Arrays.copyOf(output, outputSize);
+    }
+}
@@ -1,37 +1,201 @@
-import java.util.HashMap;
+import java.io.IOException;
+import java.nio.CharBuffer;
+import java.util.Arrays;
 
 class SymbolTable {
-    // symbol mapped to (id, address)
-    // (id is the serial number)
-    public HashMap<String, SymbolTableEntry> table = new HashMap<>();
+    // (id is the serial number, given in the order the symbols are first seen)
+    // names are kept back to back in one char pool and addresses in an int array, both indexed by id,
+    // so a symbol costs its characters and a few ints instead of a map entry, a String and an entry object
+    private char[] namePool = new char[1024];
+    private int namePoolSize = 0;
+    private int[] nameStarts = new int[64]; // id -> start of the name in namePool, nameStarts[id + 1] is its end
+    private int[] addresses = new int[64]; // id -> address
+    private int[] hashes = new int[64]; // id -> hash of the name, kept for growing the index
+    private boolean[] isDefined = new boolean[64]; // id -> given an address by the module (label or EQU), false for external symbols
+    private int[] relocations = new int[64]; // id -> how many times the module's base is in the address (see getRelocation)
+    private int[] aliases = new int[64]; // id -> for an EQU of a symbol the module does not define, that symbol's id, else 0
+    private int[] versions = new int[64]; // id -> bumped whenever the address, isDefined or the relocation changes (see ExpressionTable)
+    private int size = 0;
+    private int[] index = new int[128]; // open addressing over ids, 0 is an empty slot
 
-    @Override
-    public String toString() {
-        StringBuilder buffer = new StringBuilder();
-        buffer.append("Symbol Table:\n");
-        buffer.append(String.format("%-4s %-10s %-7s\n", "ID", "Symbol", "Address"));
-        // sort the table in ascending order of id before printing
-        table.entrySet().stream()
-            .sorted((entry1, entry2) -> entry1.getValue().id - entry2.getValue().id)
-            .forEach(entry -> {
-                buffer.append(String.format("%-4d %-10s %-7d\n",
-                    entry.getValue().id, entry.getKey(), entry.getValue().address));
-            });
-        return buffer.toString();
+    public int size() {
+        return size;
+    }
+
+    // id of the symbol, -1 if it is not in the table
+    public int lookup(CharSequence name) {
+        int mask = index.length - 1;
+        int slot = hash(name) & mask;
+        int id;
+        while ((id = index[slot]) != 0) {
+            if (isNamed(id, name)) {
+                return id;
+            }
+            slot = (slot + 1) & mask;
+        }
+        return -1;
+    }
+
+    // relocation of a symbol whose value the linker cannot move with the module: it is computed from a symbol the module
+    // does not define, or it multiplies two addresses
+    public static final int NOT_RELOCATABLE = Integer.MIN_VALUE;
+
+    // a label: the symbol gets this address, whether or not it was seen before
+    public int define(CharSequence name, int address) {
+        int id = lookupOrAdd(name, address);
+        change(id, address, true, 1);
+        return id;
+    }
+
+    // a symbol used as an operand: added with this address if it is not in the table yet
+    // the symbol stays external (see isDefined) until a label or EQU defines it
+    public int addIfAbsent(CharSequence name, int address) {
+        return lookupOrAdd(name, address);
+    }
+
+    public int getAddress(int id) {
+        return addresses[id];
+    }
+
+    // EQU of an expression: its value and relocation (see ExpressionTable.relocation)
+    public void setAddress(int id, int address, int relocation) {
+        change(id, address, isDefined[id], relocation);
+    }
+
+    // EQU: the symbol takes the address and relocation of target, and is defined if target is
+    // if it is not, the symbol stays external and the linker gives it the address of target (see getAlias)
+    public void equate(int id, int targetId) {
+        change(id, addresses[targetId], isDefined[targetId], relocations[targetId]);
+        if (!isDefined[targetId]) {
+            aliases[id] = aliases[targetId] != 0 ? aliases[targetId] : targetId;
+        }
+    }
+
+    // the symbol this external symbol is an EQU of, 0 if it is not one
+    public int getAlias(int id) {
+        return aliases[id];
+    }
+
+    // how often the address, isDefined or relocation of the symbol changed, so a value computed from it can tell whether it is stale
+    public int getVersion(int id) {
+        return versions[id];
+    }
+
+    // how far the address moves when the linker moves the module by one: 1 for a label (relocatable), 0 for a constant or a
+    // difference of labels (absolute), NOT_RELOCATABLE if it cannot be moved
+    public int getRelocation(int id) {
+        return relocations[id];
+    }
+
+    private void change(int id, int address, boolean defined, int relocation) {
+        if (addresses[id] != address || isDefined[id] != defined || relocations[id] != relocation) {
+            addresses[id] = address;
+            isDefined[id] = defined;
+            relocations[id] = relocation;
+            versions[id]++;
+        }
+        aliases[id] = 0;
     }
-}
 
-class SymbolTableEntry {
-    int id;
-    int address;
+    // whether the module gives the symbol its address; the others are external and only resolved by the linker
+    public boolean isDefined(int id) {
+        return isDefined[id];
+    }
 
-    public SymbolTableEntry(int id) {
-        this.id = id;
-        this.address = -1;
+    public String getName(int id) {
+        return new String(namePool, nameStarts[id], nameStarts[id + 1] - nameStarts[id]);
     }
 
-    public SymbolTableEntry(int id, int address) {
-        this.id = id;
-        this.address = address;
+    private int lookupOrAdd(CharSequence name, int address) {
+        if ((size + 1) * 2 > index.length) {
+            growIndex();
+        }
+        int hash = hash(name);
+        int mask = index.length - 1;
+        int slot = hash & mask;
+        int id;
+        while ((id = index[slot]) != 0) {
+            if (isNamed(id, name)) {
+                return id;
+            }
+            slot = (slot + 1) & mask;
+        }
+
+        id = ++size;
+        if (id + 1 >= nameStarts.length) {
+            int capacity = nameStarts.length * 2;
+            nameStarts = Arrays.copyOf(nameStarts, capacity);
+            addresses = Arrays.copyOf(addresses, capacity);
+            hashes = Arrays.copyOf(hashes, capacity);
+            isDefined = Arrays.copyOf(isDefined, capacity);
+            relocations = Arrays.copyOf(relocations, capacity);
+            aliases = Arrays.copyOf(aliases, capacity);
+            versions = Arrays.copyOf(versions, capacity);
+        }
+        int length = name.length();
+        if (namePoolSize + length > namePool.length) {
+            namePool = Arrays.copyOf(namePool, Math.max(namePool.length * 2, namePoolSize + length));
+        }
+        for (int i = 0; i < length; i++) {
+            namePool[namePoolSize + i] = name.charAt(i);
+        }
+        nameStarts[id] = namePoolSize;
+        namePoolSize += length;
+        nameStarts[id + 1] = namePoolSize;
+        addresses[id] = address;
+        relocations[id] = 1; // an operand's placeholder address, like a label's
+        hashes[id] = hash;
+        index[slot] = id;
+        return id;
+    }
+
+    private boolean isNamed(int id, CharSequence name) {
+        int start = nameStarts[id];
+        int length = nameStarts[id + 1] - start;
+        if (length != name.length()) {
+            return false;
+        }
+        for (int i = 0; i < length; i++) {
+            if (namePool[start + i] != name.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static int hash(CharSequence name) {
+        int hash = 0;
+        for (int i = 0; i < name.length(); i++) {
+            hash = 31 * hash + name.charAt(i);
+        }
+        return hash ^ (hash >>> 16);
+    }
+
+    private void growIndex() {
+        index = new int[index.length * 2];
+        int mask = index.length - 1;
+        for (int id = 1; id <= size; id++) {
+            int slot = hashes[id] & mask;
+            while (index[slot] != 0) {
+                slot = (slot + 1) & mask;
+            }
+            index[slot] = id;
+        }
+    }
+
+    public void write(ChannelTextWriter output) throws IOException {
+        output.append("Symbol Table:\n");
+        output.appendLeft("ID", 4).append(' ').appendLeft("Symbol", 10).append(' ').appendLeft("Address", 7).append('\n');
+        // ids are the array indexes, so walking them prints in id order without sorting
+        CharBuffer name = CharBuffer.wrap(namePool);
+        for (int id = 1; id <= size; id++) {
+            name.limit(nameStarts[id + 1]).position(nameStarts[id]);
+            output.appendLeft(id, 4).append(' ').appendLeft(name, 10).append(' ').appendLeft(addresses[id], 7).append('\n');
+        }
+    }
+
+    @Override
+    public String toString() {
+        return ChannelTextWriter.render(this::write);
     }
 }
@@ -0,0 +1,49 @@
+class TokenReader {
+    // walks over a TokenStream word by word, the same way MappedSourceReader walks over the file
+    private TokenStream tokens;
+    private int position = -1;
+    public String word;
+    public String previousWord;
+    public byte kind;
+    public MachineOpcodeTableEntry instruction; // null if the word is not an instruction
+    public int lineNumber;
+    public boolean isFirstWordInLine = false;
+    private boolean forceFirstWordInLine = false; // set after the literals following ltorg are skipped, so that the next word starts a line
+
+    public TokenReader(TokenStream tokens) {
+        this.tokens = tokens;
+    }
+
+    public String readWord() {
+        position++;
+        if (position >= tokens.size) {
+            position = tokens.size;
+            previousWord = word;
+            word = null;
+            instruction = null;
+            return null; // end of input
+        }
+        isFirstWordInLine = tokens.isFirstInLine[position] || forceFirstWordInLine;
+        forceFirstWordInLine = false;
+        previousWord = tokens.isFirstInLine[position] ? null : word;
+        word = tokens.texts[position];
+        kind = tokens.kinds[position];
+        instruction = tokens.instructions[position];
+        lineNumber = tokens.lineNumbers[position];
+        return word;
+    }
+
+    // whether the next word is on the same line, i.e. an operand of this one
+    public boolean isOperandNext() {
+        return position + 1 < tokens.size && !tokens.isFirstInLine[position + 1] && !forceFirstWordInLine;
+    }
+
+    // skip the literals written after ltorg, as they are already processed
+    public void skipLiteralsAfterLtorg() {
+        while (position + 1 < tokens.size && tokens.texts[position + 1].startsWith("='")) {
+            position++;
+            word = tokens.texts[position];
+        }
+        forceFirstWordInLine = true;
+    }
+}
@@ -0,0 +1,115 @@
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+
+class TokenStream {
+    /*
+        lexical kind of a token (decided by its spelling only)
+        SYMBOL - starts with a letter or an underscore (machine instructions are also spelled like this)
+        LITERAL - ='...'
+        CONSTANT - digits only
+        OTHER - anything else
+    */
+    public static final byte SYMBOL = 1;
+    public static final byte LITERAL = 2;
+    public static final byte CONSTANT = 3;
+    public static final byte OTHER = 4;
+
+    // token i is described by kinds[i], lineNumbers[i], isFirstInLine[i], texts[i] and instructions[i]
+    public byte[] kinds;
+    public int[] lineNumbers;
+    public boolean[] isFirstInLine;
+    public String[] texts; // interned, without the trailing comma
+    public MachineOpcodeTableEntry[] instructions; // the entry in MachineOpcodeTable, null if the word is not an instruction
+    public int size = 0;
+    public ArrayList<IncludedFile> includedFiles; // every file spliced in by INCLUDE, nested ones too
+    int lineEnds = 0; // line ends the tokens were read over (spliced lines included), the parallel lexer adds these up
+    int lines = 0; // lines of the whole file (spliced lines included), what it takes up where it is included
+
+    public TokenStream() {
+        this(256);
+    }
+
+    public TokenStream(int initialCapacity) {
+        this(initialCapacity, new ArrayList<>());
+    }
+
+    public TokenStream(int initialCapacity, ArrayList<IncludedFile> includedFiles) {
+        this.includedFiles = includedFiles;
+        kinds = new byte[initialCapacity];
+        lineNumbers = new int[initialCapacity];
+        isFirstInLine = new boolean[initialCapacity];
+        texts = new String[initialCapacity];
+        instructions = new MachineOpcodeTableEntry[initialCapacity];
+    }
+
+    public void add(byte kind, int lineNumber, boolean firstInLine, String text, MachineOpcodeTableEntry instruction) {
+        if (size == kinds.length) {
+            grow(size + 1);
+        }
+        kinds[size] = kind;
+        lineNumbers[size] = lineNumber;
+        isFirstInLine[size] = firstInLine;
+        texts[size] = text;
+        instructions[size] = instruction;
+        size++;
+    }
+
+    // append the tokens of an included file, their line numbers moved lineOffset lines further down
+    // the token slots are copied in bulk, the texts and classifications are shared with the include cache's stream
+    public void splice(TokenStream included, int lineOffset) {
+        if (size + included.size > kinds.length) {
+            grow(size + included.size);
+        }
+        place(included, size, lineOffset);
+        size += included.size;
+        includedFiles.addAll(included.includedFiles);
+    }
+
+    // whether none of the included files changed since they were tokenized
+    public boolean isUpToDate() throws IOException {
+        for (IncludedFile includedFile : includedFiles) {
+            if (!includedFile.isUnchanged()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // copy the tokens of part to token index start, their line numbers moved lineOffset lines further down
+    // the arrays must already be large enough and size is left alone, so that parts can be placed from several threads at once
+    void place(TokenStream part, int start, int lineOffset) {
+        System.arraycopy(part.kinds, 0, kinds, start, part.size);
+        System.arraycopy(part.isFirstInLine, 0, isFirstInLine, start, part.size);
+        System.arraycopy(part.texts, 0, texts, start, part.size);
+        System.arraycopy(part.instructions, 0, instructions, start, part.size);
+        for (int i = 0; i < part.size; i++) {
+            lineNumbers[start + i] = part.lineNumbers[i] + lineOffset;
+        }
+    }
+
+    private void grow(int minimumCapacity) {
+        int newCapacity = Math.max(Math.max(16, size * 2), minimumCapacity);
+        kinds = Arrays.copyOf(kinds, newCapacity);
+        lineNumbers = Arrays.copyOf(lineNumbers, newCapacity);
+        isFirstInLine = Arrays.copyOf(isFirstInLine, newCapacity);
+        texts = Arrays.copyOf(texts, newCapacity);
+        instructions = Arrays.copyOf(instructions, newCapacity);
+    }
+
+    public static byte kindOf(String word) {
+        char first = word.charAt(0);
+        if (Character.isLetter(first) || first == '_') {
+            return SYMBOL;
+        }
+        if (word.startsWith("='") && word.endsWith("'")) {
+            return LITERAL;
+        }
+        for (int i = 0; i < word.length(); i++) {
+            if (!Character.isDigit(word.charAt(i))) {
+                return OTHER;
+            }
+        }
+        return CONSTANT;
+    }
+}
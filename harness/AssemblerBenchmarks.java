@@ -0,0 +1,83 @@
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+
+public class AssemblerBenchmarks {
+    // throughput and allocation of every pass 1 phase over programs from ProgramGenerator, and of the two-pass and one-pass modes
+    // usage: java AssemblerBenchmarks [lines ...] [generator setting=value ...]   (default 10000 100000)
+    // e.g. java AssemblerBenchmarks 100000 literalDensity=0.5 ltorgEvery=0
+    private static final int WARMUP_RUNS = 5;
+    private static final int MEASURED_RUNS = 10;
+
+    public static void main(String[] args) throws Exception {
+        List<Integer> sizes = new ArrayList<>();
+        List<String> settings = new ArrayList<>();
+        for (String arg : args) {
+            if (arg.indexOf('=') == -1) {
+                sizes.add(Integer.parseInt(arg));
+            } else {
+                settings.add(arg);
+            }
+        }
+        if (sizes.isEmpty()) {
+            sizes.add(10_000);
+            sizes.add(100_000);
+        }
+
+        File workDirectory = Files.createTempDirectory("assembler-benchmark").toFile();
+        System.out.printf("%-10s %-26s %-12s %-16s %-16s%n", "Lines", "Phase", "ms/op", "lines/s", "bytes/op");
+        for (int lines : sizes) {
+            ProgramGenerator generator = new ProgramGenerator();
+            for (String setting : settings) {
+                generator.set(setting);
+            }
+            generator.lines = lines;
+            File input = new File(workDirectory, "program_" + lines + ".asm");
+            generator.write(input);
+            String inputFileName = input.getPath();
+            String outputDirectory = new File(workDirectory, "output_" + lines).getPath();
+
+            TokenStream tokens = Lexer.tokenize(inputFileName);
+            Assembler assemblerWithTables = new Assembler(inputFileName); // for timing the intermediate code alone
+            assemblerWithTables.generateTables(tokens);
+            AssemblyResult result = new Assembler(inputFileName).assemble();
+
+            measure(lines, "tokenize", () -> Lexer.tokenize(inputFileName));
+            // the fork/join lexer in 64 KiB parts, whatever the file size (scales with -Djava.util.concurrent.ForkJoinPool.common.parallelism)
+            measure(lines, "tokenizeInParts", () -> Lexer.tokenize(inputFileName, 1 << 16));
+            measure(lines, "generateTables", () -> {
+                Assembler assembler = new Assembler(inputFileName);
+                assembler.generateTables(tokens);
+                return assembler;
+            });
+            measure(lines, "generateIntermediateCode", () -> assemblerWithTables.generateIntermediateCode(tokens));
+            measure(lines, "renderTables", () -> result.symbolTable.toString().length()
+                + result.literalTable.toString().length() + result.poolTable.toString().length());
+            measure(lines, "renderIntermediateCode", () -> result.intermediateCode.toString());
+            // source to object image: two walks and Pass2 over the intermediate code, against the one-pass walk
+            measure(lines, "twoPassObjectImage", () -> new Pass2(new Assembler(inputFileName).assemble()).buildObjectImage());
+            measure(lines, "onePassObjectImage", () -> Pass2.buildObjectImage(new Assembler(inputFileName).assembleOnePass().machineCode));
+            // the four files written one after the other on this thread, against written by ArtifactWriter in the background
+            // while the intermediate code is generated (bytes/op then leaves out what the writer threads allocate)
+            measure(lines, "performPass1Sequential", () -> {
+                ArtifactWriter writer = new ArtifactWriter(outputDirectory, Artifact.defaults(), Runnable::run);
+                AssemblyResult assemblyResult = new Assembler(inputFileName).assemble(writer);
+                writer.await();
+                return assemblyResult;
+            });
+            measure(lines, "performPass1", () -> {
+                ArtifactWriter writer = new ArtifactWriter(outputDirectory, Artifact.defaults());
+                AssemblyResult assemblyResult = new Assembler(inputFileName).assemble(writer);
+                writer.await();
+                return assemblyResult;
+            });
+        }
+    }
+
+    private static void measure(int lines, String phase, Timing.Run run) throws Exception {
+        Timing timing = Timing.measure(WARMUP_RUNS, MEASURED_RUNS, run);
+        System.out.printf("%-10d %-26s %-12.2f %-16.0f %-16d%n", lines, phase, timing.millis, lines / (timing.millis / 1000), timing.allocatedBytes);
+    }
+}
@@ -0,0 +1,105 @@
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+public class DaemonCheck {
+    // requests sent with Main client (AssemblerDaemon.send) to a daemon on a socket, each with the reply it must get and
+    // the files it must leave in its output directory. The paths are relative, as a user types them, so the client has to
+    // make the operands absolute and leave the option values alone
+    // usage: java DaemonCheck
+    private static final String PROGRAM = "START 100\nMOVER AREG, ='5'\nMOVER BREG, X\nSTOP\nX DS 1\nEND\n";
+
+    private static final String[][][] CASES = {
+        {{"assemble", "--outputs", "symbols,ic", "prog.asm", "out1"}, {"ok"}, {"symbol_table.txt", "intermediate_code.txt", "machine_code.txt"},
+            {"literal_table.txt", "pool_table.txt"}},
+        {{"assemble", "--object", "--one-pass", "--outputs", "literals", "prog.asm", "out2"}, {"ok"}, {"literal_table.txt", "machine_code.obj"},
+            {"symbol_table.txt"}},
+        {{"assemble", "--outputs", "nope", "prog.asm", "out3"}, {"error Unknown output: nope"}, {}, {}},
+        {{"assemble", "prog.asm"}, {"error usage: assemble"}, {}, {}},
+    };
+
+    public static void main(String[] args) throws Exception {
+        // under the working directory, so that relative paths reach it
+        Path workDirectory = Files.createTempDirectory(Path.of(""), "daemon-check");
+        Files.writeString(workDirectory.resolve("prog.asm"), PROGRAM);
+        Path socketFile = workDirectory.resolve("d.sock").toAbsolutePath();
+        AssemblerDaemon daemon = new AssemblerDaemon(2);
+        Thread server = new Thread(() -> {
+            try {
+                daemon.serve(socketFile);
+            } catch (Exception e) {
+                System.out.println("Daemon failed: " + e);
+            }
+        }, "daemon-check");
+        server.setDaemon(true); // does not keep a failed check running
+        server.start();
+        awaitListening(socketFile);
+
+        int failures = 0;
+        for (int i = 0; i < CASES.length; i++) {
+            String failure = check(workDirectory, CASES[i], socketFile);
+            if (failure != null) {
+                failures++;
+                System.out.println("FAIL case " + (i + 1) + ": " + failure);
+            }
+        }
+        AssemblerDaemon.send(socketFile, new String[] {"shutdown"});
+        server.join();
+        delete(workDirectory.toFile());
+        System.out.println((CASES.length - failures) + " of " + CASES.length + " daemon requests as expected");
+        System.exit(failures == 0 ? 0 : 1);
+    }
+
+    // null if the request gets the reply and the files the case expects, otherwise what differs
+    private static String check(Path workDirectory, String[][] testCase, Path socketFile) throws Exception {
+        String[] request = testCase[0].clone();
+        for (int i = 1; i < request.length; i++) {
+            if (request[i].equals("prog.asm") || request[i].startsWith("out")) {
+                request[i] = workDirectory.resolve(request[i]).toString(); // relative to the working directory
+            }
+        }
+        String reply = AssemblerDaemon.send(socketFile, request);
+        if (!reply.startsWith(testCase[1][0])) {
+            return Arrays.toString(testCase[0]) + " replied " + reply;
+        }
+        File outputDirectory = new File(request[request.length - 1]);
+        for (String fileName : testCase[2]) {
+            if (!new File(outputDirectory, fileName).isFile()) {
+                return Arrays.toString(testCase[0]) + " did not write " + fileName;
+            }
+        }
+        for (String fileName : testCase[3]) {
+            if (new File(outputDirectory, fileName).exists()) {
+                return Arrays.toString(testCase[0]) + " wrote " + fileName + ", which was not selected";
+            }
+        }
+        return null;
+    }
+
+    // the socket file is there from bind on, connections are only taken once the daemon listens
+    private static void awaitListening(Path socketFile) throws Exception {
+        for (int attempt = 0; ; attempt++) {
+            try {
+                AssemblerDaemon.send(socketFile, new String[] {"stats"});
+                return;
+            } catch (IOException e) {
+                if (attempt == 500) {
+                    throw e;
+                }
+                Thread.sleep(10);
+            }
+        }
+    }
+
+    private static void delete(File file) {
+        File[] files = file.listFiles();
+        if (files != null) {
+            for (File child : files) {
+                delete(child);
+            }
+        }
+        file.delete();
+    }
+}
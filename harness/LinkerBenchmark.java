@@ -0,0 +1,66 @@
+import java.io.File;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+public class LinkerBenchmark {
+    // time of Linker.link (layout, relocation and resolution, not the assembly) for programs of more and more modules
+    // from ProgramGenerator, each module referring to the data symbols of the others
+    // usage: java LinkerBenchmark [modules ...] [generator setting=value ...]   (default 50 100 200 400, lines=500 externalDensity=0.2)
+    private static final int WARMUP_RUNS = 3;
+    private static final int MEASURED_RUNS = 5;
+
+    public static void main(String[] args) throws Exception {
+        List<Integer> moduleCounts = new ArrayList<>();
+        List<String> settings = new ArrayList<>();
+        for (String arg : args) {
+            if (arg.indexOf('=') == -1) {
+                moduleCounts.add(Integer.parseInt(arg));
+            } else {
+                settings.add(arg);
+            }
+        }
+        if (moduleCounts.isEmpty()) {
+            moduleCounts.addAll(List.of(50, 100, 200, 400));
+        }
+
+        File workDirectory = Files.createTempDirectory("linker-benchmark").toFile();
+        ExecutorService executor = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors());
+        System.out.printf("%-10s %-12s %-14s %-14s %-12s%n", "Modules", "Words", "Externals", "Link (ms)", "us/module");
+        for (int modules : moduleCounts) {
+            String[] inputFileNames = new String[modules];
+            for (int module = 0; module < modules; module++) {
+                ProgramGenerator generator = new ProgramGenerator();
+                generator.lines = 500;
+                generator.externalDensity = 0.2;
+                for (String setting : settings) {
+                    generator.set(setting);
+                }
+                generator.modules = modules;
+                generator.module = module;
+                generator.seed = module;
+                inputFileNames[module] = new File(workDirectory, "module_" + modules + "_" + module + ".asm").getPath();
+                generator.write(new File(inputFileNames[module]));
+            }
+
+            // link relocates the modules in place, so every run links freshly assembled ones (not timed)
+            Linker[] linked = new Linker[1];
+            Timing timing = Timing.measure(WARMUP_RUNS, MEASURED_RUNS, () -> {
+                Linker linker = new Linker(modules);
+                for (int module = 0; module < modules; module++) {
+                    linker.add(module, "module_" + module, new Assembler(inputFileNames[module]).assemble());
+                }
+                return linker;
+            }, linker -> {
+                linked[0] = linker;
+                return linker.link(executor);
+            });
+            ObjectImage image = (ObjectImage) timing.last;
+            System.out.printf("%-10d %-12d %-14d %-14.2f %-12.1f%n", modules, image.words.length,
+                linked[0].externalSymbols.get(), timing.millis, timing.millis * 1000 / modules);
+        }
+        executor.shutdown();
+    }
+}
@@ -0,0 +1,112 @@
+import java.io.File;
+import java.nio.file.Files;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+public class LinkerCheck {
+    // small multi-module programs linked end to end, each with the addresses it must come out with
+    // a check is SYMBOL=address (the final address in the link map), @address=value (the memory address of the instruction
+    // or the value of the data word there) or error:text (the link must fail with a message that contains text)
+    // usage: java LinkerCheck
+    private static final String[][][] CASES = {
+        {
+            // an EQU of a constant or of a difference of labels is absolute, label+constant moves with the module
+            {"START 100", "MOVER AREG, X", "STOP", "X DS 1", "END"},
+            {"START 100", "MOVER AREG, N", "ADD AREG, K", "SUB AREG, M", "C STOP", "D STOP", "N EQU 7", "K EQU (D-C)*3", "M EQU C+1", "END"},
+            {"X=102", "N=7", "K=3", "C=106", "D=107", "M=107", "@103=7", "@104=3", "@105=107"},
+        },
+        {
+            // an EQU that multiplies two addresses cannot be moved
+            {"START 100", "STOP", "END"},
+            {"START 100", "C STOP", "M EQU C*C", "END"},
+            {"error:M in b cannot be relocated"},
+        },
+        {
+            // DC of a symbol is resolved (Y) and relocated (C) like an instruction's operand, DC of a difference stays
+            {"START 100", "MOVER AREG, Y", "STOP", "Y DS 1", "END"},
+            {"START 100", "MOVER AREG, P", "C STOP", "D STOP", "P DC Y", "Q DC C", "R DC (D-C)*2", "END"},
+            {"Y=102", "C=104", "P=106", "@103=106", "@106=102", "@107=104", "@108=2"},
+        },
+        {
+            // DC of a label plus a constant would be a plain value the linker cannot move
+            {"START 100", "STOP", "END"},
+            {"START 100", "C STOP", "DC C+1", "END"},
+            {"error:DC C+1 on line 3 moves with the module in b"},
+        },
+        {
+            // nor can it resolve an external symbol inside an expression
+            {"START 100", "Y STOP", "END"},
+            {"START 100", "STOP", "DC Y+1", "END"},
+            {"error:DC Y+1 on line 3 uses an external symbol"},
+        },
+        {
+            // an EQU of an external symbol, directly (B) or through another EQU (E), is resolved as that symbol
+            {"START 100", "MOVER AREG, X", "STOP", "X DS 1", "END"},
+            {"START 100", "MOVER AREG, X", "B EQU X", "E EQU B", "MOVER BREG, E", "P DC B", "STOP", "END"},
+            {"X=102", "P=105", "@103=102", "@104=102", "@105=102"},
+        },
+        {
+            // and names that symbol when no module defines it
+            {"START 100", "STOP", "END"},
+            {"START 100", "MOVER AREG, Y", "B EQU Y", "MOVER BREG, B", "STOP", "END"},
+            {"error:B in b is an EQU of Y, which is defined in no module"},
+        },
+    };
+
+    public static void main(String[] args) throws Exception {
+        File workDirectory = Files.createTempDirectory("linker-check").toFile();
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        int failures = 0;
+        for (int i = 0; i < CASES.length; i++) {
+            String failure = check(workDirectory, CASES[i], executor);
+            if (failure != null) {
+                failures++;
+                System.out.println("FAIL case " + (i + 1) + ": " + failure);
+            }
+        }
+        executor.shutdown();
+        System.out.println((CASES.length - failures) + " of " + CASES.length + " link cases as expected");
+        System.exit(failures == 0 ? 0 : 1);
+    }
+
+    // null if the link gives what the case expects, otherwise what differs
+    private static String check(File workDirectory, String[][] linkCase, ExecutorService executor) throws Exception {
+        String[] expected = linkCase[linkCase.length - 1];
+        Linker linker = new Linker(linkCase.length - 1);
+        for (int module = 0; module < linkCase.length - 1; module++) {
+            String name = String.valueOf((char) ('a' + module));
+            File input = new File(workDirectory, name + ".asm");
+            Files.write(input.toPath(), (String.join("\n", linkCase[module]) + "\n").getBytes());
+            linker.add(module, name, new Assembler(input.getPath()).assemble());
+        }
+
+        ObjectImage image;
+        try {
+            image = linker.link(executor);
+        } catch (IllegalStateException e) {
+            if (expected[0].startsWith("error:") && e.getMessage().contains(expected[0].substring("error:".length()))) {
+                return null;
+            }
+            return e.getMessage().replace('\n', ' ');
+        }
+        String map = ChannelTextWriter.render(linker::writeMap);
+        for (String check : expected) {
+            if (check.startsWith("error:")) {
+                return "linked, expected " + check;
+            }
+            String[] parts = check.split("=");
+            int value = Integer.parseInt(parts[1]);
+            if (check.startsWith("@")) {
+                int address = Integer.parseInt(parts[0].substring(1));
+                int word = image.words[address - image.origin];
+                int actual = word >>> ObjectImage.OPCODE_SHIFT == 0 ? word : word & ObjectImage.ADDRESS_MASK; // data or an instruction
+                if (actual != value) {
+                    return "word at " + address + " is " + actual + ", expected " + value;
+                }
+            } else if (!map.matches("(?s).*\\n" + parts[0] + " +\\S+ +" + value + " *\\n.*")) {
+                return parts[0] + " is not at " + value + " in\n" + map;
+            }
+        }
+        return null;
+    }
+}
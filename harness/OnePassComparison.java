@@ -0,0 +1,119 @@
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+public class OnePassComparison {
+    // differential check of the one-pass mode: every file is assembled both ways and all outputs must be identical
+    // (the four pass 1 files, the binary intermediate code, the machine code text and the object image)
+    // usage: java OnePassComparison [.asm files or directories ...] [generated=N] [lines=N]
+    //        generated=N also checks N programs from ProgramGenerator with varied settings (default 200, up to lines=N lines)
+    public static void main(String[] args) throws Exception {
+        List<File> inputFiles = new ArrayList<>();
+        int generatedPrograms = 200;
+        int maxLines = 5_000;
+        for (String arg : args) {
+            if (arg.startsWith("generated=")) {
+                generatedPrograms = Integer.parseInt(arg.substring("generated=".length()));
+            } else if (arg.startsWith("lines=")) {
+                maxLines = Integer.parseInt(arg.substring("lines=".length()));
+            } else {
+                File file = new File(arg);
+                File[] files = file.isDirectory() ? file.listFiles((dir, name) -> name.endsWith(".asm")) : new File[] {file};
+                if (files != null) {
+                    Arrays.sort(files);
+                    inputFiles.addAll(Arrays.asList(files));
+                }
+            }
+        }
+
+        File workDirectory = Files.createTempDirectory("one-pass-comparison").toFile();
+        int givenFiles = inputFiles.size();
+        Random random = new Random(1);
+        for (int i = 0; i < generatedPrograms; i++) {
+            ProgramGenerator generator = new ProgramGenerator();
+            generator.seed = i;
+            generator.lines = 20 + random.nextInt(Math.max(1, maxLines - 20));
+            generator.symbols = 1 + random.nextInt(200);
+            generator.literalDensity = random.nextDouble();
+            generator.distinctLiterals = 1 + random.nextInt(20);
+            generator.ltorgEvery = random.nextInt(4) == 0 ? 0 : 2 + random.nextInt(100);
+            generator.originEvery = random.nextInt(3) == 0 ? 0 : 2 + random.nextInt(50);
+            generator.equEvery = random.nextInt(3) == 0 ? 0 : 2 + random.nextInt(50);
+            generator.expressionEvery = random.nextInt(3) == 0 ? 0 : 2 + random.nextInt(50);
+            generator.dcEvery = random.nextInt(4) == 0 ? 0 : 2 + random.nextInt(30);
+            generator.labelEvery = random.nextInt(5) == 0 ? 0 : 1 + random.nextInt(20);
+            File input = new File(workDirectory, "generated_" + i + ".asm");
+            generator.write(input);
+            inputFiles.add(input);
+        }
+
+        int mismatches = 0;
+        for (int i = 0; i < inputFiles.size(); i++) {
+            File input = inputFiles.get(i);
+            String mismatch = compare(input.getPath());
+            if (mismatch != null) {
+                mismatches++;
+                System.out.println("MISMATCH " + input + ": " + mismatch);
+            } else if (i >= givenFiles) {
+                input.delete(); // only the generated programs that differ are kept for a look
+            }
+        }
+        workDirectory.delete();
+        System.out.println((inputFiles.size() - mismatches) + " of " + inputFiles.size() + " programs identical in both modes");
+        System.exit(mismatches == 0 ? 0 : 1);
+    }
+
+    // null if both modes give the same outputs (or fail with the same exception), otherwise what differs
+    private static String compare(String inputAsmFileName) throws IOException {
+        String[] twoPass;
+        String[] onePass;
+        try {
+            AssemblyResult result = new Assembler(inputAsmFileName).assemble();
+            twoPass = outputs(result, new Pass2(result));
+        } catch (RuntimeException e) {
+            twoPass = new String[] {e.getClass().getName()};
+        }
+        try {
+            AssemblyResult result = new Assembler(inputAsmFileName).assembleOnePass();
+            onePass = outputs(result, result.machineCode);
+        } catch (RuntimeException e) {
+            onePass = new String[] {e.getClass().getName()};
+        }
+
+        String[] names = {"literal table", "symbol table", "pool table", "intermediate code", "binary intermediate code", "machine code", "object image"};
+        if (twoPass.length != onePass.length) {
+            return "two-pass " + (twoPass.length == 1 ? "failed with " + twoPass[0] : "succeeded")
+                + ", one-pass " + (onePass.length == 1 ? "failed with " + onePass[0] : "succeeded");
+        }
+        for (int i = 0; i < twoPass.length; i++) {
+            if (!twoPass[i].equals(onePass[i])) {
+                return twoPass.length == 1 ? "different exceptions " + twoPass[0] + " / " + onePass[0] : names[i];
+            }
+        }
+        return null;
+    }
+
+    private static String[] outputs(AssemblyResult result, MachineCodeSource machineCode) throws IOException {
+        ByteArrayOutputStream intermediateCodeBytes = new ByteArrayOutputStream();
+        try (DataOutputStream output = new DataOutputStream(intermediateCodeBytes)) {
+            result.intermediateCode.writeBinary(output);
+        }
+        StringWriter machineCodeText = new StringWriter();
+        Pass2.writeMachineCode(machineCode, machineCodeText);
+        ByteArrayOutputStream objectImageBytes = new ByteArrayOutputStream();
+        try (DataOutputStream output = new DataOutputStream(objectImageBytes)) {
+            Pass2.buildObjectImage(machineCode).write(output);
+        }
+        return new String[] {
+            result.literalTable.toString(), result.symbolTable.toString(), result.poolTable.toString(), result.intermediateCode.toString(),
+            Arrays.toString(intermediateCodeBytes.toByteArray()), machineCodeText.toString(), Arrays.toString(objectImageBytes.toByteArray())
+        };
+    }
+}
@@ -0,0 +1,81 @@
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+
+public class Pass2Benchmark {
+    // compares pass 2 fed in memory by pass 1 with pass 2 run in a second process that reads the text tables back
+    // usage: java Pass2Benchmark [lines ...]   (default 10000 100000 1000000)
+    private static final int WARMUP_RUNS = 3;
+    private static final int MEASURED_RUNS = 5;
+
+    public static void main(String[] args) throws Exception {
+        int[] sizes = {10_000, 100_000, 1_000_000};
+        if (args.length > 0) {
+            sizes = new int[args.length];
+            for (int i = 0; i < args.length; i++) {
+                sizes[i] = Integer.parseInt(args[i]);
+            }
+        }
+
+        File workDirectory = Files.createTempDirectory("pass2-benchmark").toFile();
+        System.out.printf("%-10s %-14s %-16s %-16s %-16s%n", "Lines", "Pass 2 (ms)", "Pass 2 (lines/s)", "In memory (ms)", "Two process (ms)");
+        for (int lines : sizes) {
+            File input = new File(workDirectory, "program_" + lines + ".asm");
+            ProgramGenerator generator = new ProgramGenerator();
+            generator.lines = lines; // no ORIGIN, as the text handoff cannot follow it
+            generator.write(input);
+
+            // pass 2 alone, over a result that is already in memory
+            AssemblyResult result = new Assembler(input.getPath()).assemble();
+            File machineCode = new File(workDirectory, "machine_code_" + lines + ".txt");
+            double pass2Millis = measure(() -> {
+                try (Writer output = new BufferedWriter(new FileWriter(machineCode), 1 << 16)) {
+                    new Pass2(result).writeMachineCode(output);
+                }
+                return null;
+            });
+
+            // both passes in this process, the tables are handed over in memory
+            double inMemoryMillis = measure(() -> {
+                AssemblyResult freshResult = new Assembler(input.getPath()).assemble();
+                try (Writer output = new BufferedWriter(new FileWriter(machineCode), 1 << 16)) {
+                    new Pass2(freshResult).writeMachineCode(output);
+                }
+                return freshResult;
+            });
+
+            // pass 1 and pass 2 as separate processes that hand over the text files
+            File tables = new File(workDirectory, "tables_" + lines);
+            double twoProcessMillis = measure(() -> {
+                run("pass1", input.getPath(), tables.getPath());
+                run("pass2", tables.getPath(), machineCode.getPath());
+                return null;
+            });
+
+            System.out.printf("%-10d %-14.1f %-16.0f %-16.1f %-16.1f%n", lines, pass2Millis, lines / (pass2Millis / 1000), inMemoryMillis, twoProcessMillis);
+        }
+    }
+
+    // mean wall time of the measured runs in milliseconds
+    private static double measure(Timing.Run run) throws Exception {
+        return Timing.measure(WARMUP_RUNS, MEASURED_RUNS, run).millis;
+    }
+
+    private static void run(String... mainArgs) throws IOException, InterruptedException {
+        List<String> command = new ArrayList<>();
+        command.add(new File(System.getProperty("java.home"), "bin/java").getPath());
+        command.add("-cp");
+        command.add(System.getProperty("java.class.path"));
+        command.add("Main");
+        command.addAll(List.of(mainArgs));
+        Process process = new ProcessBuilder(command).inheritIO().start();
+        if (process.waitFor() != 0) {
+            throw new IOException("Command failed: " + command);
+        }
+    }
+}
@@ -0,0 +1,75 @@
+import java.io.File;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+
+public class SimulatorBenchmark {
+    // runs many generated programs in one Simulator, one after the other, and reports programs and instructions per second
+    // the programs are assembled once up front, only loading and running them is timed. A generated program can loop
+    // forever, so each run stops after a number of steps
+    // usage: java SimulatorBenchmark [programs ...] [steps=N] [generator setting=value ...]   (default 1000 10000, lines=200 steps=10000)
+    private static final int WARMUP_RUNS = 3;
+    private static final int MEASURED_RUNS = 5;
+
+    public static void main(String[] args) throws Exception {
+        List<Integer> programCounts = new ArrayList<>();
+        List<String> settings = new ArrayList<>();
+        long stepLimit = 10_000;
+        for (String arg : args) {
+            if (arg.indexOf('=') == -1) {
+                programCounts.add(Integer.parseInt(arg));
+            } else if (arg.startsWith("steps=")) {
+                stepLimit = Long.parseLong(arg.substring("steps=".length()));
+            } else {
+                settings.add(arg);
+            }
+        }
+        if (programCounts.isEmpty()) {
+            programCounts.addAll(List.of(1000, 10_000));
+        }
+
+        // a few distinct programs, run in turn
+        int distinctPrograms = 100;
+        File workDirectory = Files.createTempDirectory("simulator-benchmark").toFile();
+        ObjectImage[] images = new ObjectImage[distinctPrograms];
+        for (int i = 0; i < distinctPrograms; i++) {
+            ProgramGenerator generator = new ProgramGenerator();
+            generator.lines = 200;
+            generator.symbols = 20;
+            for (String setting : settings) {
+                generator.set(setting);
+            }
+            generator.seed = i;
+            File input = new File(workDirectory, "program_" + i + ".asm");
+            generator.write(input);
+            images[i] = Pass2.buildObjectImage(MachineCode.of(new Assembler(input.getPath()).assemble()));
+        }
+        int[] input = new int[64];
+        for (int i = 0; i < input.length; i++) {
+            input[i] = i + 1;
+        }
+
+        Simulator simulator = new Simulator();
+        System.out.printf("%-10s %-14s %-12s %-12s %-14s %-16s%n", "Programs", "Instructions", "Stopped", "Faulted", "Run (ms)", "Instructions/s");
+        for (int programs : programCounts) {
+            long finalStepLimit = stepLimit;
+            Timing timing = Timing.measure(WARMUP_RUNS, MEASURED_RUNS, () -> {
+                long[] counts = new long[3]; // instructions, stopped, faulted
+                for (int program = 0; program < programs; program++) {
+                    simulator.load(images[program % distinctPrograms]);
+                    simulator.setInput(input);
+                    if (simulator.run(finalStepLimit)) {
+                        counts[1]++;
+                    } else if (simulator.fault != null) {
+                        counts[2]++;
+                    }
+                    counts[0] += simulator.steps;
+                }
+                return counts;
+            });
+            long[] counts = (long[]) timing.last;
+            System.out.printf("%-10d %-14d %-12d %-12d %-14.1f %-16.0f%n", programs, counts[0], counts[1], counts[2], timing.millis,
+                counts[0] / (timing.millis / 1000));
+        }
+    }
+}
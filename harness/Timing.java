@@ -0,0 +1,61 @@
+import java.lang.management.ManagementFactory;
+
+class Timing {
+    // the measuring loop of the benchmarks: a few warm-up runs, then the mean wall time and allocation of the measured runs
+    // allocation is counted for the calling thread only (work handed to other threads is left out), -1 where the JVM
+    // cannot measure it
+    private static final com.sun.management.ThreadMXBean THREADS = threadBean();
+    private static Object sink; // keeps the results alive so that the work is not optimised away
+
+    public double millis; // per run
+    public long allocatedBytes; // per run
+    public Object last; // what the last run returned
+
+    interface Run {
+        Object run() throws Exception;
+    }
+
+    // run is timed, prepare (e.g. a fresh copy of what run changes) is not
+    interface Prepare<T> {
+        T prepare() throws Exception;
+    }
+
+    interface PreparedRun<T> {
+        Object run(T prepared) throws Exception;
+    }
+
+    public static Timing measure(int warmupRuns, int measuredRuns, Run run) throws Exception {
+        return measure(warmupRuns, measuredRuns, () -> null, prepared -> run.run());
+    }
+
+    public static <T> Timing measure(int warmupRuns, int measuredRuns, Prepare<T> prepare, PreparedRun<T> run) throws Exception {
+        for (int i = 0; i < warmupRuns; i++) {
+            sink = run.run(prepare.prepare());
+        }
+        long nanos = 0;
+        long bytes = 0;
+        for (int i = 0; i < measuredRuns; i++) {
+            T prepared = prepare.prepare();
+            long bytesBefore = allocatedBytes();
+            long start = System.nanoTime();
+            sink = run.run(prepared);
+            nanos += System.nanoTime() - start;
+            bytes += allocatedBytes() - bytesBefore;
+        }
+        Timing timing = new Timing();
+        timing.millis = nanos / 1e6 / measuredRuns;
+        timing.allocatedBytes = THREADS == null ? -1 : bytes / measuredRuns;
+        timing.last = sink;
+        return timing;
+    }
+
+    private static long allocatedBytes() {
+        return THREADS == null ? 0 : THREADS.getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+
+    // only the HotSpot bean offers allocation per thread
+    private static com.sun.management.ThreadMXBean threadBean() {
+        return ManagementFactory.getThreadMXBean() instanceof com.sun.management.ThreadMXBean
+            ? (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean() : null;
+    }
+}